@@ -0,0 +1,15 @@
+package scheduler.benchmark;
+
+import org.openjdk.jmh.Main;
+
+// Entry point of target/benchmarks.jar.
+// With no arguments every benchmark runs and the results are written as JSON to target/jmh-result.json so they
+// can be tracked over time; any arguments are passed to JMH unchanged (e.g. a benchmark regex, or -h for help).
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            args = new String[]{"-rf", "json", "-rff", "target/jmh-result.json"};
+        }
+        Main.main(args);
+    }
+}
@@ -0,0 +1,43 @@
+package scheduler.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import scheduler.Scheduler;
+import scheduler.server.Session;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+// Tokenizing and dispatching a command line, without touching the database: the commands below are all
+// rejected (unknown operation, or not logged in) before any query would run.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandParsingBenchmark {
+    private final Session session = new Session(new PrintStream(OutputStream.nullOutputStream()));
+
+    @Benchmark
+    public String[] tokenize() {
+        return Scheduler.tokenize("reserve 2024-05-01 Pfizer");
+    }
+
+    @Benchmark
+    public boolean dispatchUnknown() {
+        return Scheduler.execute("no_such_command a b", session);
+    }
+
+    @Benchmark
+    public boolean dispatchLastBranch() {
+        // logout used to be the last branch of the if/else dispatcher; with the command table every name costs
+        // the same single lookup
+        return Scheduler.execute("logout", session);
+    }
+
+    @Benchmark
+    public boolean dispatchReserveRejected() {
+        return Scheduler.execute("reserve 2024-05-01 Pfizer", session);
+    }
+}
@@ -0,0 +1,135 @@
+package scheduler.benchmark;
+
+import scheduler.db.MigrationRunner;
+import scheduler.util.Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+// An in-process H2 database in SQL Server compatibility mode, created from create.sql, seeded with
+// production-sized data and then migrated. Benchmarks point the scheduler at it with -DConnectionUrl=URL.
+public class EmbeddedDatabase {
+    public static final String URL = "jdbc:h2:mem:scheduler;MODE=MSSQLServer;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+
+    public static final String PASSWORD = "Passw0rd!";
+    public static final int CAREGIVERS = 1_000;
+    public static final int PATIENTS = 20_000;
+    public static final int DAYS = 365;
+    public static final int HISTORY = 200_000;
+    public static final LocalDate FIRST_DAY = LocalDate.of(2030, 1, 1);
+    public static final String[] VACCINES = {"AstraZeneca", "Janssen", "Moderna", "Novavax", "Pfizer"};
+
+    private static final int BATCH = 5_000;
+
+    // Create the schema and seed it:
+    //  - CAREGIVERS caregivers, each available on every one of DAYS days starting at FIRST_DAY
+    //  - PATIENTS patients, all with password PASSWORD
+    //  - effectively unlimited doses of each of VACCINES
+    //  - HISTORY past appointments; caregiver0 has one in every twenty, patient0 has HISTORY / PATIENTS
+    public static void createAndSeed() throws SQLException, IOException {
+        try (Connection con = DriverManager.getConnection(URL)) {
+            try (InputStream in = EmbeddedDatabase.class.getResourceAsStream("/create.sql")) {
+                String ddl = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                Statement statement = con.createStatement();
+                for (String sql : ddl.split(";")) {
+                    if (!sql.isBlank()) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+            con.setAutoCommit(false);
+            byte[] salt = Util.generateSalt();
+            byte[] hash = Util.generateHash(PASSWORD, salt);
+
+            PreparedStatement caregiver = con.prepareStatement("INSERT INTO Caregivers VALUES (?, ?, ?)");
+            for (int i = 0; i < CAREGIVERS; i++) {
+                caregiver.setString(1, caregiverName(i));
+                caregiver.setBytes(2, salt);
+                caregiver.setBytes(3, hash);
+                caregiver.addBatch();
+            }
+            caregiver.executeBatch();
+
+            PreparedStatement patient = con.prepareStatement("INSERT INTO Patients VALUES (?, ?, ?)");
+            for (int i = 0; i < PATIENTS; i++) {
+                patient.setString(1, patientName(i));
+                patient.setBytes(2, salt);
+                patient.setBytes(3, hash);
+                patient.addBatch();
+                if (i % BATCH == BATCH - 1) {
+                    patient.executeBatch();
+                }
+            }
+            patient.executeBatch();
+
+            PreparedStatement vaccine = con.prepareStatement("INSERT INTO Vaccines VALUES (?, ?)");
+            for (String name : VACCINES) {
+                vaccine.setString(1, name);
+                vaccine.setInt(2, 1_000_000_000);
+                vaccine.addBatch();
+            }
+            vaccine.executeBatch();
+
+            PreparedStatement availability = con.prepareStatement("INSERT INTO Availabilities VALUES (?, ?)");
+            int rows = 0;
+            for (int day = 0; day < DAYS; day++) {
+                Date d = Date.valueOf(FIRST_DAY.plusDays(day));
+                for (int i = 0; i < CAREGIVERS; i++) {
+                    availability.setDate(1, d);
+                    availability.setString(2, caregiverName(i));
+                    availability.addBatch();
+                    if (++rows % BATCH == 0) {
+                        availability.executeBatch();
+                    }
+                }
+            }
+            availability.executeBatch();
+
+            PreparedStatement appointment = con.prepareStatement(
+                    "INSERT INTO Appointments (CaregiverName, PatientName, VaccineName, Time) VALUES (?, ?, ?, ?)");
+            for (int i = 0; i < HISTORY; i++) {
+                appointment.setString(1, caregiverName(i % 20 == 0 ? 0 : i % CAREGIVERS));
+                appointment.setString(2, patientName(i % PATIENTS));
+                appointment.setString(3, VACCINES[i % VACCINES.length]);
+                appointment.setDate(4, Date.valueOf(FIRST_DAY.minusDays(1 + i % 700)));
+                appointment.addBatch();
+                if (i % BATCH == BATCH - 1) {
+                    appointment.executeBatch();
+                }
+            }
+            appointment.executeBatch();
+            con.commit();
+
+            // the indexes are built once the data is in rather than maintained through the bulk load
+            MigrationRunner.migrate(con);
+        }
+    }
+
+    // Undo every reservation made after the seed: give the caregivers their slot back and drop the appointments,
+    // so that reserve benchmarks never run out of free caregivers
+    public static void resetReservations() throws SQLException {
+        try (Connection con = DriverManager.getConnection(URL)) {
+            con.setAutoCommit(false);
+            Statement statement = con.createStatement();
+            statement.executeUpdate("UPDATE Availabilities SET Slots = 1 WHERE Slots = 0");
+            statement.executeUpdate("DELETE FROM Appointments WHERE Id > " + HISTORY);
+            con.commit();
+        }
+    }
+
+    public static String caregiverName(int i) {
+        return "caregiver" + i;
+    }
+
+    public static String patientName(int i) {
+        return "patient" + i;
+    }
+}
@@ -0,0 +1,54 @@
+package scheduler.benchmark;
+
+import scheduler.repository.Account;
+import scheduler.repository.Storage;
+import scheduler.util.Util;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static scheduler.benchmark.EmbeddedDatabase.*;
+
+// The same data set as EmbeddedDatabase, seeded through the repositories of the in-memory backend. Benchmarks
+// select that backend with -DStorage=memory.
+public class InMemoryData {
+    public static void seed() throws SQLException {
+        Storage storage = Storage.getInstance();
+        if (!storage.getKind().equals("memory")) {
+            throw new IllegalStateException("Run with -DStorage=memory");
+        }
+        byte[] salt = Util.generateSalt();
+        byte[] hash = Util.generateHash(PASSWORD, salt);
+        for (int i = 0; i < CAREGIVERS; i++) {
+            storage.caregivers().insert(new Account(caregiverName(i), salt, hash));
+        }
+        for (int i = 0; i < PATIENTS; i++) {
+            storage.patients().insert(new Account(patientName(i), salt, hash));
+        }
+        for (String name : VACCINES) {
+            storage.vaccines().insert(name, 1_000_000_000);
+        }
+        // past appointments are booked through reserve, which is the only way the backend creates them
+        for (int i = 0; i < HISTORY; i++) {
+            String caregiver = caregiverName(i % 20 == 0 ? 0 : i % CAREGIVERS);
+            Date d = Date.valueOf(FIRST_DAY.minusDays(1 + i % 700));
+            storage.availabilities().addAllIfAbsent(caregiver, List.of(d), 1);
+            storage.appointments().reserve(patientName(i % PATIENTS), VACCINES[i % VACCINES.length], d, caregiver,
+                    true);
+        }
+        resetAvailability();
+    }
+
+    // Make every caregiver available again on each of the DAYS days, so that reserve benchmarks never run out
+    public static void resetAvailability() throws SQLException {
+        List<Date> days = new ArrayList<>(DAYS);
+        for (int day = 0; day < DAYS; day++) {
+            days.add(Date.valueOf(FIRST_DAY.plusDays(day)));
+        }
+        for (int i = 0; i < CAREGIVERS; i++) {
+            Storage.getInstance().availabilities().addAllIfAbsent(caregiverName(i), days, 1);
+        }
+    }
+}
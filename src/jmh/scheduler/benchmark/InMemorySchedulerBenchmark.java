@@ -0,0 +1,101 @@
+package scheduler.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import scheduler.Scheduler;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.server.Session;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// SchedulerBenchmark's commands on the in-memory storage backend, for comparison with the database one.
+// Reservations are made by a patient of their own so they do not grow the appointments shown to patient0.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-DStorage=memory"})
+@State(Scope.Benchmark)
+public class InMemorySchedulerBenchmark {
+    private final PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+    private Session patient;
+    private Session reserver;
+    private Session caregiver;
+    private int day = 0;
+
+    @Setup(Level.Trial)
+    public void seed() throws Exception {
+        InMemoryData.seed();
+        Scheduler.loadIndexes();
+        patient = login("login_patient " + EmbeddedDatabase.patientName(0));
+        reserver = login("login_patient " + EmbeddedDatabase.patientName(EmbeddedDatabase.PATIENTS - 1));
+        caregiver = login("login_caregiver " + EmbeddedDatabase.caregiverName(0));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetAvailability() throws Exception {
+        InMemoryData.resetAvailability();
+        AvailabilityIndex.getInstance().load();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        Scheduler.shutdown();
+    }
+
+    @Benchmark
+    public boolean searchCaregiverSchedule() {
+        return Scheduler.execute("search_caregiver_schedule " + nextDay(), patient);
+    }
+
+    @Benchmark
+    public boolean searchDates() {
+        return Scheduler.execute("search_dates " + EmbeddedDatabase.FIRST_DAY + " " +
+                EmbeddedDatabase.FIRST_DAY.plusDays(89) + " " + EmbeddedDatabase.CAREGIVERS / 2, patient);
+    }
+
+    @Benchmark
+    public boolean searchCaregivers() {
+        LocalDate first = LocalDate.parse(nextDay());
+        return Scheduler.execute("search_caregivers " + first + " " + first.plusDays(7) + " " + first.plusDays(14),
+                patient);
+    }
+
+    @Benchmark
+    public boolean reserve() {
+        return Scheduler.execute("reserve " + nextDay() + " Pfizer", reserver);
+    }
+
+    @Benchmark
+    public boolean showAppointmentsPatient() {
+        return Scheduler.execute("show_appointments", patient);
+    }
+
+    @Benchmark
+    public boolean showAppointmentsCaregiver() {
+        return Scheduler.execute("show_appointments", caregiver);
+    }
+
+    @Benchmark
+    public boolean loginPatient() {
+        Session session = new Session(out);
+        return Scheduler.execute("login_patient " + EmbeddedDatabase.patientName(1) + " " +
+                EmbeddedDatabase.PASSWORD, session);
+    }
+
+    private String nextDay() {
+        day = (day + 1) % EmbeddedDatabase.DAYS;
+        return EmbeddedDatabase.FIRST_DAY.plusDays(day).toString();
+    }
+
+    private Session login(String command) {
+        Session session = new Session(out);
+        Scheduler.execute(command + " " + EmbeddedDatabase.PASSWORD, session);
+        if (!session.isLoggedIn()) {
+            throw new IllegalStateException("Could not log in with: " + command);
+        }
+        return session;
+    }
+}
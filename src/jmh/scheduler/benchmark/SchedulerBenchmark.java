@@ -0,0 +1,111 @@
+package scheduler.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import scheduler.Scheduler;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.server.Session;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end commands through Scheduler.execute against the seeded EmbeddedDatabase, including the connection
+// pool, the in-memory indexes and the password hashing on login.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-DConnectionUrl=" + EmbeddedDatabase.URL, "-DDriverName=org.h2.Driver"})
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+    private final PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+    private Session patient;
+    private Session caregiver;
+    private int day = 0;
+
+    @Setup(Level.Trial)
+    public void seed() throws Exception {
+        EmbeddedDatabase.createAndSeed();
+        Scheduler.loadIndexes();
+        patient = login("login_patient " + EmbeddedDatabase.patientName(0));
+        caregiver = login("login_caregiver " + EmbeddedDatabase.caregiverName(0));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetReservations() throws Exception {
+        EmbeddedDatabase.resetReservations();
+        AvailabilityIndex.getInstance().load();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        Scheduler.shutdown();
+    }
+
+    @Benchmark
+    public boolean searchCaregiverSchedule() {
+        return Scheduler.execute("search_caregiver_schedule " + nextDay(), patient);
+    }
+
+    @Benchmark
+    public boolean searchDates() {
+        return Scheduler.execute("search_dates " + EmbeddedDatabase.FIRST_DAY + " " +
+                EmbeddedDatabase.FIRST_DAY.plusDays(89) + " " + EmbeddedDatabase.CAREGIVERS / 2, patient);
+    }
+
+    @Benchmark
+    public boolean searchCaregivers() {
+        LocalDate first = LocalDate.parse(nextDay());
+        return Scheduler.execute("search_caregivers " + first + " " + first.plusDays(7) + " " + first.plusDays(14),
+                patient);
+    }
+
+    @Benchmark
+    public boolean reserve() {
+        return Scheduler.execute("reserve " + nextDay() + " Pfizer", patient);
+    }
+
+    @Benchmark
+    public boolean showAppointmentsPatient() {
+        return Scheduler.execute("show_appointments", patient);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean showAppointmentsCaregiver() {
+        return Scheduler.execute("show_appointments", caregiver);
+    }
+
+    @Benchmark
+    public boolean showAppointmentsCaregiverFirstPage() {
+        return Scheduler.execute("show_appointments --limit 50", caregiver);
+    }
+
+    @Benchmark
+    public boolean showAppointmentsCaregiverLastPage() {
+        return Scheduler.execute("show_appointments --after-id " + (EmbeddedDatabase.HISTORY - 100) +
+                " --limit 50", caregiver);
+    }
+
+    @Benchmark
+    public boolean loginPatient() {
+        Session session = new Session(out);
+        return Scheduler.execute("login_patient " + EmbeddedDatabase.patientName(1) + " " +
+                EmbeddedDatabase.PASSWORD, session);
+    }
+
+    private String nextDay() {
+        day = (day + 1) % EmbeddedDatabase.DAYS;
+        return EmbeddedDatabase.FIRST_DAY.plusDays(day).toString();
+    }
+
+    private Session login(String command) {
+        Session session = new Session(out);
+        Scheduler.execute(command + " " + EmbeddedDatabase.PASSWORD, session);
+        if (!session.isLoggedIn()) {
+            throw new IllegalStateException("Could not log in with: " + command);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,42 @@
+package scheduler.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import scheduler.util.Util;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtilBenchmark {
+    private final byte[] salt = Util.generateSalt();
+    private final byte[] paddedHash = {12, -3, 44, 7, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+    @Benchmark
+    public byte[] generateHash() {
+        return Util.generateHash("Passw0rd!", salt);
+    }
+
+    @Benchmark
+    public byte[] generateSalt() {
+        return Util.generateSalt();
+    }
+
+    @Benchmark
+    public String passwordCheckStrong() {
+        return Util.passwordCheck("Passw0rd!");
+    }
+
+    @Benchmark
+    public String passwordCheckWeak() {
+        return Util.passwordCheck("password1");
+    }
+
+    @Benchmark
+    public byte[] trim() {
+        return Util.trim(paddedHash);
+    }
+}
@@ -1,3 +1,6 @@
+DROP TABLE JournalCheckpoint;
+DROP TABLE SchemaVersion;
+DROP TABLE DoseCheckpoint;
 DROP TABLE Appointments;
 DROP TABLE Vaccines;
 DROP TABLE Availabilities;
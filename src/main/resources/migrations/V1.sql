@@ -0,0 +1,8 @@
+-- appointment history indexes
+-- show_appointments seeks to one user's appointments and reads them in Id order. Each index holds every column the
+-- page returns, so a page never touches the table itself.
+CREATE INDEX IX_Appointments_CaregiverName_Id
+    ON Appointments (CaregiverName, Id, PatientName, VaccineName, Time);
+
+CREATE INDEX IX_Appointments_PatientName_Id
+    ON Appointments (PatientName, Id, CaregiverName, VaccineName, Time);
@@ -0,0 +1,5 @@
+-- appointments by date index
+-- The appointments on a date, per caregiver: cancel_day seeks straight to one caregiver's day instead of reading
+-- their whole history. Free caregivers by date are already covered by the Availabilities primary key.
+CREATE INDEX IX_Appointments_Time_CaregiverName
+    ON Appointments (Time, CaregiverName, Id);
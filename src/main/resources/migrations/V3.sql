@@ -0,0 +1,6 @@
+-- journal checkpoint
+-- The sequence number of the last command the CommandJournal applied, written in the same transaction as the
+-- command itself.
+CREATE TABLE JournalCheckpoint (
+    LastSequence bigint NOT NULL
+);
@@ -0,0 +1,6 @@
+-- availability slots
+-- How many more appointments the caregiver can take on the date. A reservation decrements it in place and a
+-- cancellation increments it, so a fully booked day keeps its row at 0 instead of being deleted and re-inserted.
+-- Existing rows were one appointment each.
+ALTER TABLE Availabilities ADD Slots int DEFAULT 1 NOT NULL
+    CONSTRAINT CK_Availabilities_Slots CHECK (Slots >= 0);
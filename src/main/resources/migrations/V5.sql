@@ -0,0 +1,6 @@
+-- dose checkpoint table
+-- DoseInventory records the last appointment whose dose it has flushed here. Databases created from a create.sql
+-- that already had the table keep it.
+CREATE TABLE DoseCheckpoint (
+    LastAppointmentId int NOT NULL
+);
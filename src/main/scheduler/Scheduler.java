@@ -1,114 +1,366 @@
 package scheduler;
 
+import scheduler.cache.AvailabilityBitmaps;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.CaregiverLoad;
+import scheduler.cache.DoseInventory;
+import scheduler.cache.QueryCache;
+import scheduler.cache.UsernameFilter;
 import scheduler.db.ConnectionManager;
+import scheduler.db.MigrationRunner;
+import scheduler.db.QueryPlans;
+import scheduler.metrics.LatencySnapshot;
+import scheduler.metrics.Metrics;
+import scheduler.model.AccountImporter;
+import scheduler.model.Appointment;
+import scheduler.model.AssignmentStrategy;
 import scheduler.model.Caregiver;
 import scheduler.model.Patient;
 import scheduler.model.Vaccine;
+import scheduler.repository.AppointmentQuery;
+import scheduler.repository.ReservationPipeline;
+import scheduler.repository.Storage;
+import scheduler.repository.journal.CommandJournal;
+import scheduler.server.SchedulerServer;
+import scheduler.server.Session;
+import scheduler.util.PasswordHasher;
 import scheduler.util.Util;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.sql.Date;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class Scheduler {
 
-    // objects to keep track of the currently logged-in user
-    // Note: it is always true that at most one of currentCaregiver and currentPatient is not null
-    //       since only one user can be logged-in at a time
-    private static Caregiver currentCaregiver = null;
-    private static Patient currentPatient = null;
+    // the longest date range a single upload_availability may cover
+    private static final int MAX_UPLOAD_DAYS = 731;
+    // the most appointments a single upload_availability may open on one date
+    private static final int MAX_SLOTS = 1000;
+    // the longest date range a single search_caregiver_schedule may cover
+    private static final int MAX_SEARCH_DAYS = 366;
+    // bytes of console output held back before a write, in interactive and batch mode
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
 
     public static void main(String[] args) {
+        // bring the schema up to date, warm the in-memory indexes before taking commands, and write them back on
+        // the way out
+        migrateSchema();
+        openJournal();
+        loadIndexes();
+        Runtime.getRuntime().addShutdownHook(new Thread(Scheduler::shutdown, "scheduler-shutdown"));
+
+        // scheduler --server [port] serves many clients over a local socket instead of the console
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : SchedulerServer.DEFAULT_PORT;
+            try {
+                new SchedulerServer(port).serve();
+            } catch (IOException e) {
+                System.out.println("Failed to start server on port " + port);
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        // scheduler --batch [path] runs the commands in a file, or on standard input, without prompting
+        if (args.length > 0 && args[0].equals("--batch")) {
+            if (!runBatch(args.length > 1 ? args[1] : "-")) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        // replies are buffered and written out once per command rather than once per line
+        PrintStream out = new PrintStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE), false);
+
         // printing greetings text
-        System.out.println();
-        System.out.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
-        System.out.println("*** Please enter one of the following commands ***");
-        System.out.println("> create_patient <username> <password>");
-        System.out.println("> create_caregiver <username> <password>");
-        System.out.println("> login_patient <username> <password>");
-        System.out.println("> login_caregiver <username> <password>");
-        System.out.println("> search_caregiver_schedule <date>");
-        System.out.println("> reserve <date> <vaccine>");
-        System.out.println("> upload_availability <date>");
-        System.out.println("> cancel <appointment_id>");  // TODO: implement cancel (extra credit)
-        System.out.println("> add_doses <vaccine> <number>");
-        System.out.println("> show_appointments");
-        System.out.println("> logout");
-        System.out.println("> quit");
-        System.out.println();
+        printGreeting(out);
 
         // read input from user
+        Session session = new Session(out);
         BufferedReader r = new BufferedReader(new InputStreamReader(System.in));
         while (true) {
-            System.out.print("> ");
+            out.print("> ");
+            out.flush();
             String response = "";
             try {
                 response = r.readLine();
             } catch (IOException e) {
-                System.out.println("Please try again!");
+                out.println("Please try again!");
             }
-            // split the user input by spaces
-            String[] tokens = response.split(" ");
-            // check if input exists
-            if (tokens.length == 0) {
-                System.out.println("Please try again!");
-                continue;
-            }
-            // determine which operation to perform
-            String operation = tokens[0];
-            if (operation.equals("create_patient")) {
-                createPatient(tokens);
-            } else if (operation.equals("create_caregiver")) {
-                createCaregiver(tokens);
-            } else if (operation.equals("login_patient")) {
-                loginPatient(tokens);
-            } else if (operation.equals("login_caregiver")) {
-                loginCaregiver(tokens);
-            } else if (operation.equals("search_caregiver_schedule")) {
-                searchCaregiverSchedule(tokens);
-            } else if (operation.equals("reserve")) {
-                reserve(tokens);
-            } else if (operation.equals("upload_availability")) {
-                uploadAvailability(tokens);
-            } else if (operation.equals("cancel")) {
-                cancel(tokens);
-            } else if (operation.equals("add_doses")) {
-                addDoses(tokens);
-            } else if (operation.equals("show_appointments")) {
-                showAppointments(tokens);
-            } else if (operation.equals("logout")) {
-                logout(tokens);
-            } else if (operation.equals("quit")) {
-                System.out.println("Bye!");
+            // end of input behaves like quit
+            if (response == null || !execute(response, session)) {
+                out.flush();
                 return;
-            } else {
-                System.out.println("Invalid operation name!");
             }
         }
     }
 
-    private static void createPatient(String[] tokens) {
+    // Run every command in the file at path ("-" for standard input) in one session, stopping early at quit.
+    // Each command is echoed before its replies, all of it through one buffered stream; blank lines and lines
+    // starting with # are skipped. A command that throws is answered with "Please try again!" and the run carries
+    // on. A summary goes to standard error so the replies can be piped on as they are.
+    // Returns false if the file could not be read.
+    private static boolean runBatch(String path) {
+        PrintStream out = new PrintStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE), false);
+        Session session = new Session(out);
+        int commands = 0;
+        long start = System.nanoTime();
+        try (BufferedReader reader = path.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(path))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String command = line.strip();
+                if (command.isEmpty() || command.startsWith("#")) {
+                    continue;
+                }
+                out.print("> ");
+                out.println(command);
+                commands++;
+                try {
+                    if (!execute(command, session)) {
+                        break;
+                    }
+                } catch (RuntimeException e) {
+                    out.println("Please try again!");
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read " + path);
+            return false;
+        } finally {
+            out.flush();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.println(String.format("Ran %d command(s) in %.3fs (%.1f commands/s)",
+                commands, seconds, seconds == 0 ? 0 : commands / seconds));
+        return true;
+    }
+
+    // Apply any pending migrations (see MigrationRunner) to the jdbc database, unless MigrateOnStartup is false
+    public static void migrateSchema() {
+        if (!Storage.getInstance().getKind().equals("jdbc")
+                || !Boolean.parseBoolean(Util.getConfig("MigrateOnStartup", "true"))) {
+            return;
+        }
+        try {
+            MigrationRunner.migrate();
+        } catch (SQLException e) {
+            // commands still work on the old schema, only slower
+            System.out.println("Could not migrate the database schema");
+            e.printStackTrace();
+        }
+    }
+
+    // Replay whatever a previous run journaled but did not apply, then start journaling (see CommandJournal)
+    public static void openJournal() {
+        if (!Storage.getInstance().getKind().equals("jdbc") || !CommandJournal.getInstance().isEnabled()) {
+            return;
+        }
+        try {
+            CommandJournal.getInstance().open();
+        } catch (SQLException e) {
+            // writes then go straight to the database, and the journal is replayed on the next start
+            System.out.println("Could not open the command journal");
+            e.printStackTrace();
+        }
+    }
+
+    public static void loadIndexes() {
+        try {
+            AvailabilityIndex.getInstance().load();
+        } catch (SQLException e) {
+            // commands fall back to querying the database directly
+            System.out.println("Could not load availability index");
+            e.printStackTrace();
+        }
+        try {
+            UsernameFilter.load();
+        } catch (SQLException e) {
+            // every username check then goes to storage
+            System.out.println("Could not load username filter");
+            e.printStackTrace();
+        }
+        try {
+            CaregiverLoad.getInstance().load();
+        } catch (SQLException e) {
+            // least-loaded assignment then starts every caregiver from zero
+            System.out.println("Could not load caregiver load");
+            e.printStackTrace();
+        }
+        try {
+            DoseInventory.getInstance().load();
+        } catch (SQLException e) {
+            // doses are then taken directly in the database by each reservation
+            System.out.println("Could not load dose inventory");
+            e.printStackTrace();
+        }
+    }
+
+    // flush anything still held in memory, then release the storage backend
+    public static void shutdown() {
+        CommandJournal.getInstance().close();
+        DoseInventory.getInstance().close();
+        Storage.getInstance().close();
+    }
+
+    public static void printGreeting(PrintStream out) {
+        out.println();
+        out.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
+        out.println("*** Please enter one of the following commands ***");
+        out.println("> create_patient <username> <password>");
+        out.println("> create_caregiver <username> <password>");
+        out.println("> import_accounts <patient|caregiver> <csv_path>");
+        out.println("> login_patient <username> <password>");
+        out.println("> login_caregiver <username> <password>");
+        out.println("> search_caregiver_schedule <date>");
+        out.println("> search_caregiver_schedule <start_date> <end_date> [--caregivers]");
+        out.println("> search_dates <start_date> <end_date> <min_caregivers>");
+        out.println("> search_caregivers <date> [<date> ...] [--any]");
+        out.println("> reserve <date> <vaccine>");
+        out.println("> upload_availability <date> [slots]");
+        out.println("> upload_availability <start_date> <end_date> [weekday_mask] [slots]");
+        out.println("> upload_availability_file <path> [slots]");
+        out.println("> cancel <appointment_id>");
+        out.println("> cancel_day <caregiver> <date>");
+        out.println("> add_doses <vaccine> <number>");
+        out.println("> show_appointments [--from-date <date>] [--to-date <date>] [--after-id <id>] [--limit <n>]");
+        out.println("> stats");
+        out.println("> explain");
+        out.println("> logout");
+        out.println("> quit");
+        out.println();
+    }
+
+    // A command handler. Every handler validates its own tokens, tokens[0] being the command name.
+    private interface Handler {
+        void run(String[] tokens, Session session);
+    }
+
+    private static final Handler QUIT = Scheduler::quit;
+
+    // every command by name, looked up once per line instead of comparing against each name in turn
+    private static final Map<String, Handler> COMMANDS = new HashMap<>();
+
+    static {
+        COMMANDS.put("create_patient", Scheduler::createPatient);
+        COMMANDS.put("create_caregiver", Scheduler::createCaregiver);
+        COMMANDS.put("import_accounts", Scheduler::importAccounts);
+        COMMANDS.put("login_patient", Scheduler::loginPatient);
+        COMMANDS.put("login_caregiver", Scheduler::loginCaregiver);
+        COMMANDS.put("search_caregiver_schedule", Scheduler::searchCaregiverSchedule);
+        COMMANDS.put("search_dates", Scheduler::searchDates);
+        COMMANDS.put("search_caregivers", Scheduler::searchCaregivers);
+        COMMANDS.put("reserve", Scheduler::reserve);
+        COMMANDS.put("upload_availability", Scheduler::uploadAvailability);
+        COMMANDS.put("upload_availability_file", Scheduler::uploadAvailabilityFile);
+        COMMANDS.put("cancel", Scheduler::cancel);
+        COMMANDS.put("cancel_day", Scheduler::cancelDay);
+        COMMANDS.put("add_doses", Scheduler::addDoses);
+        COMMANDS.put("show_appointments", Scheduler::showAppointments);
+        COMMANDS.put("logout", Scheduler::logout);
+        COMMANDS.put("stats", Scheduler::stats);
+        COMMANDS.put("explain", Scheduler::explain);
+        COMMANDS.put("quit", QUIT);
+    }
+
+    // Split the user input on runs of spaces and tabs; a blank line has no tokens.
+    // The tokens are counted first so that the array is sized exactly and nothing else is allocated.
+    public static String[] tokenize(String response) {
+        int length = response.length();
+        int count = 0;
+        for (int i = 0; i < length; ) {
+            while (i < length && isSeparator(response.charAt(i))) {
+                i++;
+            }
+            if (i < length) {
+                count++;
+            }
+            while (i < length && !isSeparator(response.charAt(i))) {
+                i++;
+            }
+        }
+        String[] tokens = new String[count];
+        int t = 0;
+        for (int i = 0; t < count; ) {
+            while (isSeparator(response.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !isSeparator(response.charAt(i))) {
+                i++;
+            }
+            tokens[t++] = response.substring(start, i);
+        }
+        return tokens;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    // Run one command line on behalf of the given session.
+    // Returns false once the session asked to quit.
+    public static boolean execute(String response, Session session) {
+        String[] tokens = tokenize(response);
+        // check if input exists
+        if (tokens.length == 0) {
+            session.getOut().println("Please try again!");
+            return true;
+        }
+        // determine which operation to perform
+        Handler handler = COMMANDS.get(tokens[0]);
+        long start = System.nanoTime();
+        if (handler == null) {
+            session.getOut().println("Invalid operation name!");
+            // unknown names are timed together so typos cannot grow the set of histograms
+            Metrics.getInstance().command("invalid").record(System.nanoTime() - start);
+            return true;
+        }
+        handler.run(tokens, session);
+        Metrics.getInstance().command(tokens[0]).record(System.nanoTime() - start);
+        return handler != QUIT;
+    }
+
+    private static void createPatient(String[] tokens, Session session) {
         // create_patient <username> <password>
         // check 1: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Create patient failed");
+            session.getOut().println("Create patient failed");
             return;
         }
         String username = tokens[1];
         String password = tokens[2];
         // check 2: check if the username has been taken already
-        if (usernameExistsPatient(username)) {
-            System.out.println("Username taken, try again!");
+        if (usernameExistsPatient(username, session)) {
+            session.getOut().println("Username taken, try again!");
             return;
         }
         String pCheckMessage = Util.passwordCheck(password);
         if (!pCheckMessage.equals("STRONG")) {
-            System.out.println(pCheckMessage + ", try again!");
+            session.getOut().println(pCheckMessage + ", try again!");
             return;
         }
         byte[] salt = Util.generateSalt();
@@ -118,30 +370,30 @@ public class Scheduler {
             Patient patient = new Patient.PatientBuilder(username, salt, hash).build();
             // save to patient information to our database
             patient.saveToDB();
-            System.out.println("Created user " + username);
+            session.getOut().println("Created user " + username);
         } catch (SQLException e) {
-            System.out.println("Create patient failed");
+            session.getOut().println("Create patient failed");
             e.printStackTrace();
         }
     }
 
-    private static void createCaregiver(String[] tokens) {
+    private static void createCaregiver(String[] tokens, Session session) {
         // create_caregiver <username> <password>
         // check 1: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Failed to create user.");
+            session.getOut().println("Failed to create user.");
             return;
         }
         String username = tokens[1];
         String password = tokens[2];
         // check 2: check if the username has been taken already
-        if (usernameExistsCaregiver(username)) {
-            System.out.println("Username taken, try again!");
+        if (usernameExistsCaregiver(username, session)) {
+            session.getOut().println("Username taken, try again!");
             return;
         }
         String pCheckMessage = Util.passwordCheck(password);
         if (!pCheckMessage.equals("STRONG")) {
-            System.out.println(pCheckMessage + ", try again!");
+            session.getOut().println(pCheckMessage + ", try again!");
             return;
         }
         byte[] salt = Util.generateSalt();
@@ -151,63 +403,51 @@ public class Scheduler {
             Caregiver caregiver = new Caregiver.CaregiverBuilder(username, salt, hash).build(); 
             // save to caregiver information to our database
             caregiver.saveToDB();
-            System.out.println("Created user " + username);
+            session.getOut().println("Created user " + username);
         } catch (SQLException e) {
-            System.out.println("Failed to create user.");
+            session.getOut().println("Failed to create user.");
             e.printStackTrace();
         }
     }
 
-    private static boolean usernameExistsPatient(String username) {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String selectUsername = "SELECT * FROM Patients WHERE Username = ?";
+    private static boolean usernameExistsPatient(String username, Session session) {
+        // most new usernames are definitely free, which the filter can tell without a lookup
+        if (!UsernameFilter.patients().mightContain(username)) {
+            return false;
+        }
         try {
-            PreparedStatement statement = con.prepareStatement(selectUsername);
-            statement.setString(1, username);
-            ResultSet resultSet = statement.executeQuery();
-            // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
-            return resultSet.isBeforeFirst();
+            return Storage.getInstance().patients().exists(username);
         } catch (SQLException e) {
-            System.out.println("Error occurred when checking username");
+            session.getOut().println("Error occurred when checking username");
             e.printStackTrace();
-        } finally {
-            cm.closeConnection();
         }
         return true;
     }
 
-    private static boolean usernameExistsCaregiver(String username) {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String selectUsername = "SELECT * FROM Caregivers WHERE Username = ?";
+    private static boolean usernameExistsCaregiver(String username, Session session) {
+        // most new usernames are definitely free, which the filter can tell without a lookup
+        if (!UsernameFilter.caregivers().mightContain(username)) {
+            return false;
+        }
         try {
-            PreparedStatement statement = con.prepareStatement(selectUsername);
-            statement.setString(1, username);
-            ResultSet resultSet = statement.executeQuery();
-            // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
-            return resultSet.isBeforeFirst();
+            return Storage.getInstance().caregivers().exists(username);
         } catch (SQLException e) {
-            System.out.println("Error occurred when checking username");
+            session.getOut().println("Error occurred when checking username");
             e.printStackTrace();
-        } finally {
-            cm.closeConnection();
         }
         return true;
     }
 
-    private static void loginPatient(String[] tokens) {
+    private static void loginPatient(String[] tokens, Session session) {
         // login_patient <username> <password>
         // check 1: if someone's already logged-in, they need to log out first
-        if (currentCaregiver != null || currentPatient != null) {
-            System.out.println("User already logged in, try again");
+        if (session.isLoggedIn()) {
+            session.getOut().println("User already logged in, try again");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Login patient failed");
+            session.getOut().println("Login patient failed");
             return;
         }
         String username = tokens[1];
@@ -217,28 +457,28 @@ public class Scheduler {
         try {
             patient = new Patient.PatientGetter(username, password).get();
         } catch (SQLException e) {
-            System.out.println("Login patient failed");
+            session.getOut().println("Login patient failed");
             e.printStackTrace();
         }
         // check if the login was successful
         if (patient == null) {
-            System.out.println("Login patient failed");
+            session.getOut().println("Login patient failed");
         } else {
-            System.out.println("Logged in as " + username);
-            currentPatient = patient;
+            session.getOut().println("Logged in as " + username);
+            session.login(patient);
         }
     }
 
-    private static void loginCaregiver(String[] tokens) {
+    private static void loginCaregiver(String[] tokens, Session session) {
         // login_caregiver <username> <password>
         // check 1: if someone's already logged-in, they need to log out first
-        if (currentCaregiver != null || currentPatient != null) {
-            System.out.println("User already logged in.");
+        if (session.isLoggedIn()) {
+            session.getOut().println("User already logged in.");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Login failed.");
+            session.getOut().println("Login failed.");
             return;
         }
         String username = tokens[1];
@@ -248,186 +488,555 @@ public class Scheduler {
         try {
             caregiver = new Caregiver.CaregiverGetter(username, password).get();
         } catch (SQLException e) {
-            System.out.println("Login failed.");
+            session.getOut().println("Login failed.");
             e.printStackTrace();
         }
         // check if the login was successful
         if (caregiver == null) {
-            System.out.println("Login failed.");
+            session.getOut().println("Login failed.");
         } else {
-            System.out.println("Logged in as: " + username);
-            currentCaregiver = caregiver;
+            session.getOut().println("Logged in as: " + username);
+            session.login(caregiver);
         }
     }
 
-    private static void searchCaregiverSchedule(String[] tokens) {
+    private static void searchCaregiverSchedule(String[] tokens, Session session) {
         // searchCaregiverSchedule <date>
+        // searchCaregiverSchedule <start_date> <end_date> [--caregivers]
         // check 1: check if there is a user currently logged in
-        if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first");
+        if (!session.isLoggedIn()) {
+            session.getOut().println("Please login first");
+            return;
+        }
+        // check 2: the length for tokens need to be 2 for a single date, or 3-4 for a range
+        if (tokens.length == 3 || tokens.length == 4) {
+            searchCaregiverScheduleRange(tokens, session);
             return;
         }
-        // check 2: the length for tokens need to be exactly 2 to include all information (with the operation name)
         if (tokens.length != 2) {
-            System.out.println("Please try again");
+            session.getOut().println("Please try again");
             return;
         }
         String date = tokens[1];
+        Date d;
+        try {
+            d = Date.valueOf(date);
+        } catch (IllegalArgumentException e) {
+            session.getOut().println("Please enter a valid date!");
+            return;
+        }
 
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+        // the caregiver names and dose counts come from memory when they are available
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        DoseInventory inventory = DoseInventory.getInstance();
+        try {
+            Iterable<String> caregivers = index.isLoaded()
+                    ? index.getCaregivers(d.toLocalDate())
+                    : Storage.getInstance().availabilities().findCaregivers(d);
+            for (String caregiver : caregivers) {
+                session.getOut().println(caregiver);
+            }
+
+            Map<String, Integer> vaccines = inventory.isLoaded()
+                    ? inventory.snapshot()
+                    : Storage.getInstance().vaccines().findAll();
+            for (Map.Entry<String, Integer> vaccine : vaccines.entrySet()) {
+                session.getOut().println(vaccine.getKey() + " " + vaccine.getValue());
+            }
+        } catch (SQLException e) {
+            session.getOut().println("Please try again");
+            e.printStackTrace();
+        }
+    }
 
-        String selectUsernames = "SELECT A.Username FROM Availabilities AS A WHERE A.Time = ? ORDER BY A.Username";
-        String selectVaccines = "SELECT * FROM Vaccines";
+    // One line per date in the range: how many caregivers are free, and whether any vaccine has doses left to
+    // book with. --caregivers also lists the caregivers under each date.
+    private static void searchCaregiverScheduleRange(String[] tokens, Session session) {
+        PrintStream out = session.getOut();
+        boolean listCaregivers = tokens.length == 4;
+        if (listCaregivers && !tokens[3].equals("--caregivers")) {
+            out.println("Please try again");
+            return;
+        }
+        LocalDate start;
+        LocalDate end;
         try {
-            PreparedStatement statement = con.prepareStatement(selectUsernames);
-            Date d = Date.valueOf(date);
-            statement.setDate(1, d);
-            ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                System.out.println(resultSet.getString(1));
+            start = Date.valueOf(tokens[1]).toLocalDate();
+            end = Date.valueOf(tokens[2]).toLocalDate();
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        if (end.isBefore(start) || ChronoUnit.DAYS.between(start, end) >= MAX_SEARCH_DAYS) {
+            out.println("Please enter a range of at most " + MAX_SEARCH_DAYS + " days!");
+            return;
+        }
+
+        // caregivers per date, from memory when the index is loaded and otherwise from one range query
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        DoseInventory inventory = DoseInventory.getInstance();
+        Map<LocalDate, Integer> counts = new HashMap<>();
+        Map<LocalDate, List<String>> names = new HashMap<>();
+        try {
+            if (index.isLoaded()) {
+                for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+                    NavigableSet<String> caregivers = index.getCaregivers(d);
+                    if (listCaregivers) {
+                        names.put(d, new ArrayList<>(caregivers));
+                        counts.put(d, names.get(d).size());
+                    } else {
+                        counts.put(d, caregivers.size());
+                    }
+                }
+            } else if (listCaregivers) {
+                Storage.getInstance().availabilities().forEachInRange(Date.valueOf(start), Date.valueOf(end),
+                        (d, caregiver) -> {
+                            names.computeIfAbsent(d.toLocalDate(), k -> new ArrayList<>()).add(caregiver);
+                            counts.merge(d.toLocalDate(), 1, Integer::sum);
+                        });
+            } else {
+                Storage.getInstance().availabilities().countByDate(Date.valueOf(start), Date.valueOf(end),
+                        (d, count) -> counts.put(d.toLocalDate(), count));
             }
 
-            statement = con.prepareStatement(selectVaccines);
-            resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                System.out.println(resultSet.getString(1) + " " + resultSet.getString(2));
+            Map<String, Integer> vaccines = inventory.isLoaded()
+                    ? inventory.snapshot()
+                    : Storage.getInstance().vaccines().findAll();
+            String doses = vaccines.values().stream().anyMatch(n -> n > 0) ? "doses available" : "no doses";
+            for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+                out.println(d + ": " + counts.getOrDefault(d, 0) + " caregiver(s), " + doses);
+                for (String caregiver : names.getOrDefault(d, List.of())) {
+                    out.println("  " + caregiver);
+                }
             }
         } catch (SQLException e) {
-            System.out.println("Please try again");
+            out.println("Please try again");
             e.printStackTrace();
-        } finally {
-            cm.closeConnection();
         }
     }
 
-    private static void reserve(String[] tokens) {
-        // searchCaregiverSchedule <date>
+    // The dates in a range with at least min_caregivers caregivers free, with how many are. Read from the
+    // availability bitmaps when they are loaded, and otherwise from one range query.
+    private static void searchDates(String[] tokens, Session session) {
+        // search_dates <start_date> <end_date> <min_caregivers>
+        PrintStream out = session.getOut();
+        if (!session.isLoggedIn()) {
+            out.println("Please login first");
+            return;
+        }
+        if (tokens.length != 4) {
+            out.println("Please try again");
+            return;
+        }
+        LocalDate start;
+        LocalDate end;
+        try {
+            start = Date.valueOf(tokens[1]).toLocalDate();
+            end = Date.valueOf(tokens[2]).toLocalDate();
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        if (end.isBefore(start) || ChronoUnit.DAYS.between(start, end) >= MAX_SEARCH_DAYS) {
+            out.println("Please enter a range of at most " + MAX_SEARCH_DAYS + " days!");
+            return;
+        }
+        if (!tokens[3].matches("\\d{1,9}") || Integer.parseInt(tokens[3]) < 1) {
+            out.println("Please enter a valid number of caregivers!");
+            return;
+        }
+        int min = Integer.parseInt(tokens[3]);
+
+        AvailabilityBitmaps bitmaps = AvailabilityBitmaps.getInstance();
+        try {
+            if (bitmaps.isLoaded()) {
+                bitmaps.forEachDateWithAtLeast(start, end, min,
+                        (d, count) -> out.println(d + ": " + count + " caregiver(s)"));
+            } else {
+                Storage.getInstance().availabilities().countByDate(Date.valueOf(start), Date.valueOf(end),
+                        (d, count) -> {
+                            if (count >= min) {
+                                out.println(d + ": " + count + " caregiver(s)");
+                            }
+                        });
+            }
+        } catch (SQLException e) {
+            out.println("Please try again");
+            e.printStackTrace();
+        }
+    }
+
+    // The caregivers free on every one of the dates, or with --any on at least one of them, in username order.
+    // Read from the availability bitmaps when they are loaded, and otherwise from one range query over the dates.
+    private static void searchCaregivers(String[] tokens, Session session) {
+        // search_caregivers <date> [<date> ...] [--any]
+        PrintStream out = session.getOut();
+        if (!session.isLoggedIn()) {
+            out.println("Please login first");
+            return;
+        }
+        boolean any = tokens[tokens.length - 1].equals("--any");
+        int dateTokens = any ? tokens.length - 2 : tokens.length - 1;
+        if (dateTokens < 1) {
+            out.println("Please try again");
+            return;
+        }
+        TreeSet<LocalDate> dates = new TreeSet<>();
+        try {
+            for (int i = 1; i <= dateTokens; i++) {
+                dates.add(Date.valueOf(tokens[i]).toLocalDate());
+            }
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        if (ChronoUnit.DAYS.between(dates.first(), dates.last()) >= MAX_SEARCH_DAYS) {
+            out.println("Please enter dates at most " + MAX_SEARCH_DAYS + " days apart!");
+            return;
+        }
+
+        AvailabilityBitmaps bitmaps = AvailabilityBitmaps.getInstance();
+        try {
+            List<String> caregivers;
+            if (bitmaps.isLoaded()) {
+                caregivers = any ? bitmaps.freeOnAny(dates) : bitmaps.freeOnAll(dates);
+            } else {
+                // how many of the dates each caregiver is free on
+                Map<String, Integer> matches = new TreeMap<>();
+                Storage.getInstance().availabilities().forEachInRange(Date.valueOf(dates.first()),
+                        Date.valueOf(dates.last()), (d, caregiver) -> {
+                            if (dates.contains(d.toLocalDate())) {
+                                matches.merge(caregiver, 1, Integer::sum);
+                            }
+                        });
+                caregivers = new ArrayList<>();
+                for (Map.Entry<String, Integer> match : matches.entrySet()) {
+                    if (any || match.getValue() == dates.size()) {
+                        caregivers.add(match.getKey());
+                    }
+                }
+            }
+            for (String caregiver : caregivers) {
+                out.println(caregiver);
+            }
+        } catch (SQLException e) {
+            out.println("Please try again");
+            e.printStackTrace();
+        }
+    }
+
+    private static void reserve(String[] tokens, Session session) {
+        // reserve <date> <vaccine>
         // check 1: check if there is a user currently logged in
-        if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first");
+        if (!session.isLoggedIn()) {
+            session.getOut().println("Please login first");
             return;
-        } else if (currentCaregiver != null) {
-            System.out.println("Please login as a patient");
+        } else if (session.getCurrentCaregiver() != null) {
+            session.getOut().println("Please login as a patient");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Please try again");
+            session.getOut().println("Please try again");
             return;
         }
         String date = tokens[1];
         String vaccineName = tokens[2];
-
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String selectUsernames = "SELECT A.Username FROM Availabilities AS A WHERE A.Time = ? ORDER BY A.Username";
-        String selectVaccines = "SELECT V.Doses FROM Vaccines AS V WHERE V.Name = ? AND V.Doses > 0";
-        String insertAppointment = "INSERT INTO Appointments (CaregiverName, PatientName, VaccineName, Time) VALUES (?, ?, ?, ?)";
-        String selectAppointment = "SELECT A.Id FROM Appointments AS A ORDER BY A.Id DESC";
-        String deleteAvailability = "DELETE FROM Availabilities WHERE Time = ? AND Username = ?";
         try {
-            PreparedStatement statement = con.prepareStatement(selectUsernames);
             Date d = Date.valueOf(date);
-            statement.setDate(1, d);
-            ResultSet caregiverSet = statement.executeQuery();
-            if (!caregiverSet.next()) {
-                System.out.println("No caregiver is available");
+            Appointment.AppointmentReserver reserver =
+                    new Appointment.AppointmentReserver(session.getCurrentPatient().getUsername(), vaccineName, d);
+            Appointment appointment = reserver.reserve();
+            if (appointment == null) {
+                if (reserver.getStatus() == Appointment.ReserveStatus.NO_CAREGIVER) {
+                    session.getOut().println("No caregiver is available");
+                } else {
+                    session.getOut().println("Not enough available doses");
+                }
                 return;
             }
-            String caregiverName = caregiverSet.getString(1);
+            session.getOut().println("Appointment ID " + appointment.getId() + ", Caregiver username " +
+                    appointment.getCaregiverName() + " (" + reserver.getAssignedBy() + ")");
+        } catch (IllegalArgumentException e) {
+            session.getOut().println("Please enter a valid date!");
+        } catch (SQLException e) {
+            session.getOut().println("Please try again");
+            e.printStackTrace();
+        }
+    }
 
-            statement = con.prepareStatement(selectVaccines);
-            statement.setString(1, vaccineName);
-            ResultSet vaccineSet = statement.executeQuery();
-            if (!vaccineSet.next()) {
-                System.out.println("Not enough available doses");
+    private static void uploadAvailability(String[] tokens, Session session) {
+        // upload_availability <date> [slots]
+        // upload_availability <start_date> <end_date> [weekday_mask] [slots]
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.getCurrentCaregiver() == null) {
+            session.getOut().println("Please login as a caregiver first!");
+            return;
+        }
+        // a trailing slot count is how many appointments the caregiver can take on each date
+        int slots = 1;
+        if (tokens.length > 2 && isSlotCount(tokens[tokens.length - 1])) {
+            try {
+                slots = parseSlots(tokens[tokens.length - 1]);
+            } catch (IllegalArgumentException e) {
+                session.getOut().println(e.getMessage());
                 return;
             }
-
-            statement = con.prepareStatement(insertAppointment);
-            statement.setString(1, caregiverName);
-            statement.setString(2, currentPatient.getUsername());
-            statement.setString(3, vaccineName);
-            statement.setDate(4, d);
-            statement.execute();
-
-            statement = con.prepareStatement(deleteAvailability);
-            statement.setDate(1, d);
-            statement.setString(2, caregiverName);
-            statement.execute();
-
-            statement = con.prepareStatement(selectAppointment);
-            ResultSet idSet = statement.executeQuery();
-            if (!idSet.next()) {
-                System.out.println("Please try again");
-                return;
+            tokens = Arrays.copyOf(tokens, tokens.length - 1);
+        }
+        // check 2: the length for tokens need to be 2 for a single date, or 3-4 for a range
+        if (tokens.length < 2 || tokens.length > 4) {
+            session.getOut().println("Please try again!");
+            return;
+        }
+        if (tokens.length == 2) {
+            String date = tokens[1];
+            try {
+                Date d = Date.valueOf(date);
+                session.getCurrentCaregiver().uploadAvailability(d, slots);
+                session.getOut().println("Availability uploaded!");
+            } catch (IllegalArgumentException e) {
+                session.getOut().println("Please enter a valid date!");
+            } catch (SQLException e) {
+                session.getOut().println("Error occurred when uploading availability");
+                e.printStackTrace();
             }
-            String appointmentId = idSet.getString(1);
-
-            Vaccine vaccine = new Vaccine.VaccineGetter(vaccineName).get();
-            vaccine.decreaseAvailableDoses(1);
+            return;
+        }
+        List<Date> dates;
+        try {
+            dates = expandDateRange(tokens, 1);
+        } catch (IllegalArgumentException e) {
+            session.getOut().println(e.getMessage());
+            return;
+        }
+        uploadDates(dates, slots, session);
+    }
 
-            System.out.println("Appointment ID " + appointmentId + ", Caregiver username " + caregiverName);
+    private static void uploadAvailabilityFile(String[] tokens, Session session) {
+        // upload_availability_file <path> [slots]
+        // every non-empty line of the file is either <date> or <start_date> <end_date> [weekday_mask]
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.getCurrentCaregiver() == null) {
+            session.getOut().println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be 2, or 3 with the slots for every date in the file
+        if (tokens.length != 2 && tokens.length != 3) {
+            session.getOut().println("Please try again!");
+            return;
+        }
+        int slots;
+        try {
+            slots = tokens.length == 3 ? parseSlots(tokens[2]) : 1;
+        } catch (IllegalArgumentException e) {
+            session.getOut().println(e.getMessage());
+            return;
+        }
+        List<Date> dates = new ArrayList<>();
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(tokens[1]))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.trim().split("\\s+");
+                if (fields[0].isEmpty()) {
+                    continue;
+                }
+                if (fields.length == 1) {
+                    dates.add(Date.valueOf(fields[0]));
+                } else {
+                    dates.addAll(expandDateRange(fields, 0));
+                }
+            }
+        } catch (IOException e) {
+            session.getOut().println("Could not read " + tokens[1]);
+            return;
+        } catch (IllegalArgumentException e) {
+            session.getOut().println("Line " + lineNumber + ": " +
+                    (e.getMessage() == null ? "Please enter a valid date!" : e.getMessage()));
+            return;
+        }
+        uploadDates(dates, slots, session);
+    }
 
+    private static void importAccounts(String[] tokens, Session session) {
+        // import_accounts <patient|caregiver> <csv_path>
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.getCurrentCaregiver() == null) {
+            session.getOut().println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
+        if (tokens.length != 3) {
+            session.getOut().println("Please try again!");
+            return;
+        }
+        AccountImporter.Role role;
+        if (tokens[1].equals("patient")) {
+            role = AccountImporter.Role.PATIENT;
+        } else if (tokens[1].equals("caregiver")) {
+            role = AccountImporter.Role.CAREGIVER;
+        } else {
+            session.getOut().println("Please choose patient or caregiver!");
+            return;
+        }
+        AccountImporter importer = new AccountImporter(role, session.getOut());
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(tokens[2]))) {
+            importer.importFrom(reader);
+        } catch (IOException e) {
+            session.getOut().println("Could not read " + tokens[2]);
+        }
+        session.getOut().println("Imported " + importer.getImported() + " account(s), " +
+                importer.getFailed() + " failed");
+    }
 
+    private static void uploadDates(List<Date> dates, int slots, Session session) {
+        try {
+            int inserted = session.getCurrentCaregiver().uploadAvailability(dates, slots);
+            session.getOut().println("Availability uploaded for " + inserted + " date(s), " +
+                    (dates.size() - inserted) + " already available");
         } catch (SQLException e) {
-            System.out.println("Please try again");
+            session.getOut().println("Error occurred when uploading availability");
             e.printStackTrace();
-        } finally {
-            cm.closeConnection();
         }
     }
 
-    private static void uploadAvailability(String[] tokens) {
-        // upload_availability <date>
-        // check 1: check if the current logged-in user is a caregiver
-        if (currentCaregiver == null) {
-            System.out.println("Please login as a caregiver first!");
+    // Weekday masks are always seven digits and dates are never all digits, so a shorter number can only be a count
+    // of slots
+    private static boolean isSlotCount(String token) {
+        return token.matches("\\d{1,6}");
+    }
+
+    private static int parseSlots(String token) {
+        int slots;
+        try {
+            slots = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            slots = 0;
+        }
+        if (slots < 1 || slots > MAX_SLOTS) {
+            throw new IllegalArgumentException("Please enter from 1 to " + MAX_SLOTS + " slots!");
+        }
+        return slots;
+    }
+
+    // Turn tokens[from] = start date, tokens[from + 1] = end date and an optional tokens[from + 2] weekday mask
+    // into the list of dates in that range. The mask has one character per weekday starting on Monday, '1' to
+    // include the day and '0' to skip it, so 1111100 is every weekday.
+    private static List<Date> expandDateRange(String[] tokens, int from) {
+        LocalDate start;
+        LocalDate end;
+        try {
+            start = Date.valueOf(tokens[from]).toLocalDate();
+            end = Date.valueOf(tokens[from + 1]).toLocalDate();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Please enter a valid date!");
+        }
+        if (end.isBefore(start) || ChronoUnit.DAYS.between(start, end) >= MAX_UPLOAD_DAYS) {
+            throw new IllegalArgumentException("Please enter a range of at most " + MAX_UPLOAD_DAYS + " days!");
+        }
+        String mask = tokens.length > from + 2 ? tokens[from + 2] : "1111111";
+        if (tokens.length > from + 3 || !mask.matches("[01]{7}")) {
+            throw new IllegalArgumentException("Please enter a weekday mask like 1111100 (Monday to Sunday)!");
+        }
+        List<Date> dates = new ArrayList<>();
+        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+            if (mask.charAt(d.getDayOfWeek().getValue() - 1) == '1') {
+                dates.add(Date.valueOf(d));
+            }
+        }
+        return dates;
+    }
+
+    private static void cancel(String[] tokens, Session session) {
+        // cancel <appointment_id>
+        // check 1: check if there is a user currently logged in
+        if (!session.isLoggedIn()) {
+            session.getOut().println("Please login first");
             return;
         }
         // check 2: the length for tokens need to be exactly 2 to include all information (with the operation name)
         if (tokens.length != 2) {
-            System.out.println("Please try again!");
+            session.getOut().println("Please try again");
             return;
         }
-        String date = tokens[1];
+        int id;
         try {
-            Date d = Date.valueOf(date);
-            currentCaregiver.uploadAvailability(d);
-            System.out.println("Availability uploaded!");
-        } catch (IllegalArgumentException e) {
-            System.out.println("Please enter a valid date!");
+            id = Integer.parseInt(tokens[1]);
+        } catch (NumberFormatException e) {
+            session.getOut().println("Please enter a valid appointment ID!");
+            return;
+        }
+        // patients and caregivers can only cancel their own appointments
+        Appointment.AppointmentCanceller canceller = new Appointment.AppointmentCanceller();
+        try {
+            Appointment appointment = session.getCurrentCaregiver() != null
+                    ? canceller.cancelOfCaregiver(id, session.getCurrentCaregiver().getUsername())
+                    : canceller.cancelOfPatient(id, session.getCurrentPatient().getUsername());
+            if (appointment == null) {
+                session.getOut().println("No appointment with ID " + id + " found");
+            } else {
+                session.getOut().println("Cancelled appointment ID " + id);
+            }
         } catch (SQLException e) {
-            System.out.println("Error occurred when uploading availability");
+            session.getOut().println("Please try again");
             e.printStackTrace();
         }
     }
 
-    private static void cancel(String[] tokens) {
-        // TODO: Extra credit
+    private static void cancelDay(String[] tokens, Session session) {
+        // cancel_day <caregiver> <date>
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.getCurrentCaregiver() == null) {
+            session.getOut().println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
+        if (tokens.length != 3) {
+            session.getOut().println("Please try again!");
+            return;
+        }
+        String caregiverName = tokens[1];
+        try {
+            Date d = Date.valueOf(tokens[2]);
+            List<Appointment> cancelled = new Appointment.AppointmentCanceller().cancelDay(caregiverName, d);
+            session.getOut().println("Cancelled " + cancelled.size() + " appointment(s) of " + caregiverName +
+                    " on " + d);
+        } catch (IllegalArgumentException e) {
+            session.getOut().println("Please enter a valid date!");
+        } catch (SQLException e) {
+            session.getOut().println("Error occurred when cancelling appointments");
+            e.printStackTrace();
+        }
     }
 
-    private static void addDoses(String[] tokens) {
+    private static void addDoses(String[] tokens, Session session) {
         // add_doses <vaccine> <number>
         // check 1: check if the current logged-in user is a caregiver
-        if (currentCaregiver == null) {
-            System.out.println("Please login as a caregiver first!");
+        if (session.getCurrentCaregiver() == null) {
+            session.getOut().println("Please login as a caregiver first!");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Please try again!");
+            session.getOut().println("Please try again!");
             return;
         }
         String vaccineName = tokens[1];
         int doses = Integer.parseInt(tokens[2]);
         Vaccine vaccine = null;
+        DoseInventory inventory = DoseInventory.getInstance();
         try {
-            vaccine = new Vaccine.VaccineGetter(vaccineName).get();
+            // once loaded, the dose inventory knows every vaccine, which saves a lookup in storage
+            if (inventory.isLoaded()) {
+                vaccine = inventory.contains(vaccineName) ? new Vaccine.VaccineBuilder(vaccineName,
+                        inventory.getAvailableDoses(vaccineName)).build() : null;
+            } else {
+                vaccine = new Vaccine.VaccineGetter(vaccineName).get();
+            }
         } catch (SQLException e) {
-            System.out.println("Error occurred when adding doses");
+            session.getOut().println("Error occurred when adding doses");
             e.printStackTrace();
         }
         // check 3: if getter returns null, it means that we need to create the vaccine and insert it into the Vaccines
@@ -437,7 +1046,7 @@ public class Scheduler {
                 vaccine = new Vaccine.VaccineBuilder(vaccineName, doses).build();
                 vaccine.saveToDB();
             } catch (SQLException e) {
-                System.out.println("Error occurred when adding doses");
+                session.getOut().println("Error occurred when adding doses");
                 e.printStackTrace();
             }
         } else {
@@ -445,70 +1054,162 @@ public class Scheduler {
             try {
                 vaccine.increaseAvailableDoses(doses);
             } catch (SQLException e) {
-                System.out.println("Error occurred when adding doses");
+                session.getOut().println("Error occurred when adding doses");
                 e.printStackTrace();
             }
         }
-        System.out.println("Doses updated!");
+        session.getOut().println("Doses updated!");
     }
 
-    private static void showAppointments(String[] tokens) {
-        // showAppointments
+    private static void showAppointments(String[] tokens, Session session) {
+        // show_appointments [--from-date <date>] [--to-date <date>] [--after-id <id>] [--limit <n>]
         // check 1: check if there is a user currently logged in
-        if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first");
+        if (!session.isLoggedIn()) {
+            session.getOut().println("Please login first");
             return;
         }
-        // check 2: the length for tokens need to be exactly 1 to include all information (with the operation name)
-        if (tokens.length != 1) {
-            System.out.println("Please try again");
+        // check 2: options come in --name value pairs
+        if (tokens.length % 2 != 1) {
+            session.getOut().println("Please try again");
             return;
         }
-
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
+        AppointmentQuery.AppointmentQueryBuilder builder = new AppointmentQuery.AppointmentQueryBuilder();
+        int limit = 0;
         try {
-            if (currentCaregiver != null) {
-                String selectAppointments = "SELECT A.Id, A.VaccineName, A.Time, A.PatientName FROM Appointments AS A WHERE A.CaregiverName = ? ORDER BY A.Id";
-                PreparedStatement statement = con.prepareStatement(selectAppointments);
-                statement.setString(1, currentCaregiver.getUsername());
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    System.out.println(
-                            resultSet.getString(1) + " " +
-                                    resultSet.getString(2) + " " +
-                                    resultSet.getString(3) + " " +
-                                    resultSet.getString(4));
+            for (int i = 1; i < tokens.length; i += 2) {
+                String value = tokens[i + 1];
+                if (tokens[i].equals("--from-date")) {
+                    builder.fromDate(Date.valueOf(value));
+                } else if (tokens[i].equals("--to-date")) {
+                    builder.toDate(Date.valueOf(value));
+                } else if (tokens[i].equals("--after-id")) {
+                    builder.afterId(Integer.parseInt(value));
+                } else if (tokens[i].equals("--limit")) {
+                    limit = Integer.parseInt(value);
+                    builder.limit(limit);
+                } else {
+                    session.getOut().println("Unknown option " + tokens[i]);
+                    return;
                 }
+            }
+        } catch (IllegalArgumentException e) {
+            session.getOut().println("Please try again");
+            return;
+        }
+        AppointmentQuery query = builder.build();
+
+        // rows are printed as they are read, into a buffer that is flushed once at the end
+        PrintStream out = new PrintStream(new BufferedOutputStream(session.getOut(), 1 << 16), false);
+        int[] shown = {0, 0};
+        try {
+            if (session.getCurrentCaregiver() != null) {
+                Storage.getInstance().appointments().forEachOfCaregiver(session.getCurrentCaregiver().getUsername(),
+                        query, a -> {
+                            out.println(a.getId() + " " + a.getVaccineName() + " " + a.getTime() + " " +
+                                    a.getPatientName());
+                            shown[0]++;
+                            shown[1] = a.getId();
+                        });
             } else {
-                String selectAppointments = "SELECT A.Id, A.VaccineName, A.Time, A.CaregiverName FROM Appointments AS A WHERE A.PatientName = ? ORDER BY A.Id";
-                PreparedStatement statement = con.prepareStatement(selectAppointments);
-                statement.setString(1, currentPatient.getUsername());
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    System.out.println(
-                            resultSet.getString(1) + " " +
-                                    resultSet.getString(2) + " " +
-                                    resultSet.getString(3) + " " +
-                                    resultSet.getString(4));
-                }
+                Storage.getInstance().appointments().forEachOfPatient(session.getCurrentPatient().getUsername(),
+                        query, a -> {
+                            out.println(a.getId() + " " + a.getVaccineName() + " " + a.getTime() + " " +
+                                    a.getCaregiverName());
+                            shown[0]++;
+                            shown[1] = a.getId();
+                        });
+            }
+            // a full page may have more after it
+            if (limit > 0 && shown[0] == limit) {
+                out.println("More appointments: use --after-id " + shown[1]);
             }
         } catch (SQLException e) {
-            System.out.println("Please try again");
+            out.println("Please try again");
             e.printStackTrace();
         } finally {
-            cm.closeConnection();
+            out.flush();
+        }
+    }
+
+    private static void stats(String[] tokens, Session session) {
+        // stats
+        PrintStream out = session.getOut();
+        if (tokens.length != 1) {
+            out.println("Please try again");
+            return;
+        }
+        Metrics metrics = Metrics.getInstance();
+        out.println("Commands:");
+        for (LatencySnapshot command : metrics.commandSnapshots()) {
+            out.println("  " + command.getName() + " " + command);
+        }
+        out.println("SQL statements:");
+        for (LatencySnapshot statement : metrics.statementSnapshots()) {
+            out.println("  " + statement);
+            out.println("    " + abbreviate(statement.getName(), 100));
+        }
+        out.println("Connection acquisition: " + metrics.connectionAcquisition().snapshot());
+        out.println("Password hashing: " + metrics.hashing().snapshot());
+        AssignmentStrategy strategy = AssignmentStrategy.getConfigured();
+        out.println("Caregiver assignment (" + strategy + "): " + metrics.assignment().snapshot() +
+                " candidates=" + strategy.getCandidates() + " takenByOthers=" + strategy.getTakenByOthers());
+        ReservationPipeline pipeline = ReservationPipeline.getInstance();
+        if (pipeline.isEnabled()) {
+            out.println("Reservation batches: " + metrics.reservationBatch().snapshot() + " reservations=" +
+                    pipeline.getRequests() + " avgBatchSize=" + String.format("%.1f", pipeline.getAverageBatchSize()));
+        }
+        CommandJournal journal = CommandJournal.getInstance();
+        if (journal.isOpen()) {
+            out.println("Journal syncs: " + metrics.journalSync().snapshot() + " appended=" + journal.getAppended() +
+                    " syncs=" + journal.getSyncs() + " applied=" + journal.getApplied() +
+                    " skipped=" + journal.getSkipped() + " backlog=" + journal.getBacklog());
         }
+        for (QueryCache<?, ?> cache : QueryCache.all()) {
+            out.println(cache);
+        }
+        if (AvailabilityBitmaps.getInstance().isLoaded()) {
+            out.println(AvailabilityBitmaps.getInstance());
+        }
+        if (Storage.getInstance().getKind().equals("jdbc")) {
+            out.println(ConnectionManager.getPoolStats());
+        }
+        out.println(PasswordHasher.getInstance().getStats());
+    }
+
+    private static void explain(String[] tokens, Session session) {
+        // explain
+        PrintStream out = session.getOut();
+        if (tokens.length != 1) {
+            out.println("Please try again");
+            return;
+        }
+        if (!Storage.getInstance().getKind().equals("jdbc")) {
+            out.println("Query plans are only available with jdbc storage");
+            return;
+        }
+        try {
+            QueryPlans.print(out);
+        } catch (SQLException e) {
+            out.println("Could not get the query plans");
+            e.printStackTrace();
+        }
+    }
+
+    private static String abbreviate(String s, int max) {
+        s = s.replaceAll("\\s+", " ");
+        return s.length() <= max ? s : s.substring(0, max - 3) + "...";
+    }
+
+    private static void quit(String[] tokens, Session session) {
+        session.getOut().println("Bye!");
     }
 
-    private static void logout(String[] tokens) {
-        if (currentCaregiver != null || currentPatient != null) {
-            currentCaregiver = null;
-            currentPatient = null;
-            System.out.println("Successfully logged out");
+    private static void logout(String[] tokens, Session session) {
+        if (session.isLoggedIn()) {
+            session.logout();
+            session.getOut().println("Successfully logged out");
         } else {
-            System.out.println("Please login first");
+            session.getOut().println("Please login first");
         }
     }
 }
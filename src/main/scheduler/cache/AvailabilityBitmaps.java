@@ -0,0 +1,188 @@
+package scheduler.cache;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+// Caregiver availability as bitmaps, for questions about many dates at once: which dates have at least K caregivers
+// free, and which caregivers are free on all (or any) of a set of dates. Every caregiver has a DayBitmap with a bit
+// per epoch day they have a free slot on, and the caregivers free on each day are counted in chunks of CHUNK_DAYS
+// days. Only chunks with a caregiver free in them are kept, so dates far apart cost no more than dates close together.
+//
+// The AvailabilityIndex builds it from the same read of the Availabilities table and keeps it current: a bit is set
+// when a caregiver's first free slot on a date appears and cleared when their last one is booked. A caregiver-day
+// costs about two bits here (a word and its index per 64 days), where the index spends a skip-list node on it, and
+// a query compares each caregiver's bitmap with the bitmap of the dates asked about a word at a time.
+public class AvailabilityBitmaps {
+    private static final AvailabilityBitmaps instance = new AvailabilityBitmaps();
+    private static final int CHUNK_DAYS = 256;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // in username order, so query results come out sorted
+    private TreeMap<String, DayBitmap> byCaregiver = new TreeMap<>();
+    // epoch day / CHUNK_DAYS -> how many caregivers are free on each day of that chunk
+    private HashMap<Long, int[]> counts = new HashMap<>();
+    private long caregiverDays = 0;
+    private volatile boolean loaded = false;
+
+    private AvailabilityBitmaps() {
+    }
+
+    public static AvailabilityBitmaps getInstance() {
+        return instance;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Replace everything with the caregivers free on each date
+    void load(Map<LocalDate, ? extends Map<String, Integer>> caregiversByDate) {
+        lock.writeLock().lock();
+        try {
+            byCaregiver = new TreeMap<>();
+            counts = new HashMap<>();
+            caregiverDays = 0;
+            caregiversByDate.forEach((date, caregivers) -> {
+                for (String caregiver : caregivers.keySet()) {
+                    set(date, caregiver);
+                }
+            });
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the caregiver has a free slot on the date
+    void set(LocalDate date, String caregiver) {
+        long day = date.toEpochDay();
+        lock.writeLock().lock();
+        try {
+            if (byCaregiver.computeIfAbsent(caregiver, k -> new DayBitmap()).set(day)) {
+                counts.computeIfAbsent(Math.floorDiv(day, CHUNK_DAYS), k -> new int[CHUNK_DAYS])
+                        [Math.floorMod(day, CHUNK_DAYS)]++;
+                caregiverDays++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the caregiver has no free slots left on the date
+    void clear(LocalDate date, String caregiver) {
+        long day = date.toEpochDay();
+        lock.writeLock().lock();
+        try {
+            DayBitmap days = byCaregiver.get(caregiver);
+            if (days != null && days.clear(day)) {
+                long chunk = Math.floorDiv(day, CHUNK_DAYS);
+                int[] chunkCounts = counts.get(chunk);
+                if (--chunkCounts[Math.floorMod(day, CHUNK_DAYS)] == 0
+                        && Arrays.stream(chunkCounts).allMatch(n -> n == 0)) {
+                    counts.remove(chunk);
+                }
+                caregiverDays--;
+                if (days.isEmpty()) {
+                    byCaregiver.remove(caregiver);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // how many caregivers are free on the date
+    public int count(LocalDate date) {
+        lock.readLock().lock();
+        try {
+            return countOn(date.toEpochDay());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // every date from start to end with at least min caregivers free, and how many are, in date order
+    public void forEachDateWithAtLeast(LocalDate start, LocalDate end, int min,
+                                       BiConsumer<LocalDate, Integer> action) {
+        List<LocalDate> dates = new ArrayList<>();
+        List<Integer> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (long day = start.toEpochDay(); day <= end.toEpochDay(); day++) {
+                int count = countOn(day);
+                if (count >= min && count > 0) {
+                    dates.add(LocalDate.ofEpochDay(day));
+                    found.add(count);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < dates.size(); i++) {
+            action.accept(dates.get(i), found.get(i));
+        }
+    }
+
+    // caregivers free on every one of the dates, in username order
+    public List<String> freeOnAll(Collection<LocalDate> dates) {
+        return find(dates, true);
+    }
+
+    // caregivers free on at least one of the dates, in username order
+    public List<String> freeOnAny(Collection<LocalDate> dates) {
+        return find(dates, false);
+    }
+
+    private List<String> find(Collection<LocalDate> dates, boolean all) {
+        DayBitmap wanted = new DayBitmap();
+        for (LocalDate date : dates) {
+            wanted.set(date.toEpochDay());
+        }
+        List<String> caregivers = new ArrayList<>();
+        if (wanted.isEmpty()) {
+            return caregivers;
+        }
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, DayBitmap> entry : byCaregiver.entrySet()) {
+                DayBitmap days = entry.getValue();
+                if (all ? days.containsAll(wanted) : days.intersects(wanted)) {
+                    caregivers.add(entry.getKey());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return caregivers;
+    }
+
+    // called under the lock
+    private int countOn(long day) {
+        int[] chunkCounts = counts.get(Math.floorDiv(day, CHUNK_DAYS));
+        return chunkCounts == null ? 0 : chunkCounts[Math.floorMod(day, CHUNK_DAYS)];
+    }
+
+    @Override
+    public String toString() {
+        lock.readLock().lock();
+        try {
+            // a map entry, its key and the chunk array for each chunk of counts
+            long bytes = 16 + counts.size() * (48 + 16 + 4L * CHUNK_DAYS);
+            for (DayBitmap days : byCaregiver.values()) {
+                bytes += days.bytes();
+            }
+            return "AvailabilityBitmaps{caregivers=" + byCaregiver.size() + ", caregiverDays=" + caregiverDays +
+                    ", days=" + counts.size() * CHUNK_DAYS + ", bytes=" + bytes + "}";
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package scheduler.cache;
+
+import scheduler.repository.Storage;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// An in-memory copy of the Availabilities table: date -> caregivers with free slots on that date, in username order,
+// and how many each has left.
+// It is loaded once and then kept current write-through by every path that changes availability, so schedule
+// lookups never go to the database and reserve can name a candidate caregiver up front. The AvailabilityBitmaps
+// are loaded and kept current along with it.
+public class AvailabilityIndex {
+    private static final AvailabilityIndex instance = new AvailabilityIndex();
+
+    private final ConcurrentHashMap<LocalDate, ConcurrentSkipListMap<String, Integer>> byDate =
+            new ConcurrentHashMap<>();
+    private final AvailabilityBitmaps bitmaps = AvailabilityBitmaps.getInstance();
+    private volatile boolean loaded = false;
+
+    private AvailabilityIndex() {
+    }
+
+    public static AvailabilityIndex getInstance() {
+        return instance;
+    }
+
+    // Read every stored availability into memory; safe to call again to resynchronize
+    public synchronized void load() throws SQLException {
+        ConcurrentHashMap<LocalDate, ConcurrentSkipListMap<String, Integer>> fresh = new ConcurrentHashMap<>();
+        Storage.getInstance().availabilities().forEach((date, caregiver, slots) ->
+                fresh.computeIfAbsent(date.toLocalDate(), k -> new ConcurrentSkipListMap<>()).put(caregiver, slots));
+        byDate.clear();
+        byDate.putAll(fresh);
+        bitmaps.load(fresh);
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Caregivers with a free slot on the given date, in username order; a live, read-only view
+    public NavigableSet<String> getCaregivers(LocalDate date) {
+        ConcurrentSkipListMap<String, Integer> caregivers = byDate.get(date);
+        return caregivers == null ? Collections.emptyNavigableSet()
+                : Collections.unmodifiableNavigableSet(caregivers.navigableKeySet());
+    }
+
+    public boolean hasAvailability(LocalDate date) {
+        ConcurrentSkipListMap<String, Integer> caregivers = byDate.get(date);
+        return caregivers != null && !caregivers.isEmpty();
+    }
+
+    // Both updates run inside the map's per-key compute so an add never lands in a map that take just dropped, and
+    // the bitmaps see a date's changes in the same order
+    public void add(LocalDate date, String caregiver, int slots) {
+        byDate.compute(date, (k, caregivers) -> {
+            if (caregivers == null) {
+                caregivers = new ConcurrentSkipListMap<>();
+            }
+            if (caregivers.merge(caregiver, slots, Integer::sum) == slots) {
+                bitmaps.set(date, caregiver);
+            }
+            return caregivers;
+        });
+    }
+
+    // one of the caregiver's slots on the date was booked
+    public void take(LocalDate date, String caregiver) {
+        byDate.computeIfPresent(date, (k, caregivers) -> {
+            if (caregivers.computeIfPresent(caregiver, (name, slots) -> slots > 1 ? slots - 1 : null) == null) {
+                bitmaps.clear(date, caregiver);
+            }
+            return caregivers.isEmpty() ? null : caregivers;
+        });
+    }
+}
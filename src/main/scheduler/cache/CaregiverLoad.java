@@ -0,0 +1,58 @@
+package scheduler.cache;
+
+import scheduler.repository.Storage;
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The number of appointments each caregiver has, counted once from storage and then kept current by every
+// reservation and cancellation, so the least-loaded assignment strategy can compare caregivers without a query.
+public class CaregiverLoad {
+    private static final CaregiverLoad instance = new CaregiverLoad();
+
+    private final ConcurrentHashMap<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    private CaregiverLoad() {
+    }
+
+    public static CaregiverLoad getInstance() {
+        return instance;
+    }
+
+    // Count every stored appointment by caregiver; safe to call again to resynchronize
+    public synchronized void load() throws SQLException {
+        ConcurrentHashMap<String, AtomicInteger> fresh = new ConcurrentHashMap<>();
+        Storage.getInstance().appointments().countByCaregiver((caregiver, count) ->
+                fresh.put(caregiver, new AtomicInteger(count)));
+        counts.clear();
+        counts.putAll(fresh);
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // 0 for a caregiver with no appointments
+    public int get(String caregiver) {
+        AtomicInteger count = counts.get(caregiver);
+        return count == null ? 0 : count.get();
+    }
+
+    public void increment(String caregiver) {
+        AtomicInteger count = counts.get(caregiver);
+        if (count == null) {
+            count = counts.computeIfAbsent(caregiver, k -> new AtomicInteger());
+        }
+        count.incrementAndGet();
+    }
+
+    public void decrement(String caregiver) {
+        AtomicInteger count = counts.get(caregiver);
+        if (count != null) {
+            count.updateAndGet(c -> Math.max(c - 1, 0));
+        }
+    }
+}
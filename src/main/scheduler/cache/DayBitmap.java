@@ -0,0 +1,96 @@
+package scheduler.cache;
+
+import java.util.Arrays;
+
+// A set of days, one bit per epoch day. Only the 64-day words with a day in the set are stored, in parallel arrays
+// sorted by word index, so a caregiver costs 16 bytes per word they are free in however far apart their dates are.
+// Not thread safe: AvailabilityBitmaps guards every bitmap with its lock.
+final class DayBitmap {
+    // keys[i] is the epoch day of bit 0 of words[i], divided by 64; only the first size entries are in use
+    private long[] keys = new long[0];
+    private long[] words = new long[0];
+    private int size = 0;
+
+    boolean get(long day) {
+        int i = find(day >> 6);
+        return i >= 0 && (words[i] & (1L << day)) != 0;
+    }
+
+    // true if the day was not in the set before
+    boolean set(long day) {
+        long key = day >> 6;
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            if (size == keys.length) {
+                int capacity = Math.max(2, size + (size >> 1));
+                keys = Arrays.copyOf(keys, capacity);
+                words = Arrays.copyOf(words, capacity);
+            }
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(words, i, words, i + 1, size - i);
+            keys[i] = key;
+            words[i] = 0;
+            size++;
+        }
+        long before = words[i];
+        words[i] |= 1L << day;
+        return words[i] != before;
+    }
+
+    // true if the day was in the set before
+    boolean clear(long day) {
+        int i = find(day >> 6);
+        if (i < 0 || (words[i] & (1L << day)) == 0) {
+            return false;
+        }
+        words[i] &= ~(1L << day);
+        if (words[i] == 0) {
+            // drop the empty word, and give back the arrays' spare room once they are mostly unused
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(words, i + 1, words, i, size - i - 1);
+            size--;
+            if (size < keys.length / 4) {
+                keys = Arrays.copyOf(keys, size * 2);
+                words = Arrays.copyOf(words, size * 2);
+            }
+        }
+        return true;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // every day in other is also in this set
+    boolean containsAll(DayBitmap other) {
+        for (int i = 0; i < other.size; i++) {
+            int j = find(other.keys[i]);
+            if (j < 0 || (words[j] & other.words[i]) != other.words[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // some day in other is also in this set
+    boolean intersects(DayBitmap other) {
+        for (int i = 0; i < other.size; i++) {
+            int j = find(other.keys[i]);
+            if (j >= 0 && (words[j] & other.words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the heap this bitmap takes, roughly: the object, and the two arrays with their headers
+    long bytes() {
+        return 24 + 2 * (16 + 8L * keys.length);
+    }
+
+    // the position of the word in keys, or -(insertion point) - 1 if it is not stored
+    private int find(long key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+}
@@ -0,0 +1,172 @@
+package scheduler.cache;
+
+import scheduler.repository.Storage;
+import scheduler.util.Util;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The authoritative count of available doses per vaccine while the scheduler is running.
+//
+// Reservations take doses from an atomic counter that can never go below zero, so the hot path needs no database
+// round trip and cannot oversell. The doses taken are remembered as a pending delta per vaccine and written to
+// the Vaccines table in one batched transaction every DoseFlushIntervalMs, or as soon as DoseFlushThreshold doses
+// are pending. Doses added with add_doses are written through immediately.
+//
+// Each flush also records in DoseCheckpoint the highest appointment id whose dose is already reflected in the
+// Vaccines table. If the process dies with deltas still pending, load() recovers them by subtracting one dose for
+// every appointment booked after the checkpoint. That recovery errs on the side of counting a dose twice, never of
+// losing one, so a crash can leave the count low but never lets a dose be sold twice.
+public class DoseInventory {
+    private static final DoseInventory instance = new DoseInventory();
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final AtomicInteger totalPending = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final long flushIntervalMillis = Util.getConfigLong("DoseFlushIntervalMs", 1_000);
+    private final int flushThreshold = Util.getConfigInt("DoseFlushThreshold", 100);
+    private final ScheduledExecutorService flusher;
+    private volatile boolean loaded = false;
+    private boolean flushing = false;
+
+    private DoseInventory() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dose-inventory-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static DoseInventory getInstance() {
+        return instance;
+    }
+
+    // Recover any deltas a previous run did not flush, then read every vaccine's dose count into memory
+    public synchronized void load() throws SQLException {
+        Map<String, Integer> doses = Storage.getInstance().vaccines().recoverDoses();
+        counters.clear();
+        doses.forEach((name, available) -> counters.put(name, new Counter(available)));
+        totalPending.set(0);
+        loaded = true;
+        if (!flushing) {
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+            flushing = true;
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean contains(String vaccineName) {
+        return counters.containsKey(vaccineName);
+    }
+
+    // -1 if the vaccine is unknown
+    public int getAvailableDoses(String vaccineName) {
+        Counter counter = counters.get(vaccineName);
+        return counter == null ? -1 : counter.available.get();
+    }
+
+    // Vaccine name -> available doses, in name order
+    public Map<String, Integer> snapshot() {
+        Map<String, Integer> doses = new TreeMap<>();
+        counters.forEach((name, counter) -> doses.put(name, counter.available.get()));
+        return doses;
+    }
+
+    // Take num doses if that many are available. The caller must hand them back with giveBack() if the
+    // appointment they were taken for is not booked after all.
+    public boolean tryTake(String vaccineName, int num) {
+        Counter counter = counters.get(vaccineName);
+        if (counter == null) {
+            return false;
+        }
+        int current;
+        do {
+            current = counter.available.get();
+            if (current < num) {
+                return false;
+            }
+        } while (!counter.available.compareAndSet(current, current - num));
+        counter.pending.addAndGet(-num);
+        if (totalPending.addAndGet(num) >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        return true;
+    }
+
+    public void giveBack(String vaccineName, int num) {
+        Counter counter = counters.get(vaccineName);
+        if (counter != null) {
+            counter.available.addAndGet(num);
+            counter.pending.addAndGet(num);
+            totalPending.addAndGet(-num);
+        }
+    }
+
+    // Record doses that have already been written to the Vaccines table
+    public void added(String vaccineName, int num) {
+        counters.computeIfAbsent(vaccineName, k -> new Counter(0)).available.addAndGet(num);
+    }
+
+    // Write every pending delta to storage in one transaction
+    public synchronized void flush() throws SQLException {
+        flushScheduled.set(false);
+        if (!loaded || counters.values().stream().allMatch(counter -> counter.pending.get() == 0)) {
+            return;
+        }
+        // read the checkpoint before collecting deltas: every appointment at or below it took its dose
+        // before this point, so its delta is guaranteed to be part of this flush or an earlier one
+        int checkpoint = Storage.getInstance().appointments().lastId();
+
+        Map<String, Integer> deltas = new TreeMap<>();
+        counters.forEach((name, counter) -> {
+            int delta = counter.pending.getAndSet(0);
+            if (delta != 0) {
+                deltas.put(name, delta);
+            }
+        });
+        try {
+            Storage.getInstance().vaccines().applyDoseDeltas(deltas, checkpoint);
+            deltas.values().forEach(totalPending::addAndGet);
+        } catch (SQLException e) {
+            // keep the deltas for the next attempt
+            deltas.forEach((name, delta) -> counters.get(name).pending.addAndGet(delta));
+            throw new SQLException();
+        }
+    }
+
+    // Flush what is pending and stop the background flusher
+    public void close() {
+        flusher.shutdownNow();
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.out.println("Error occurred when flushing doses");
+            e.printStackTrace();
+        }
+    }
+
+    private static class Counter {
+        private final AtomicInteger available;
+        // doses taken (negative) or handed back (positive) since the last flush
+        private final AtomicInteger pending = new AtomicInteger();
+
+        Counter(int available) {
+            this.available = new AtomicInteger(available);
+        }
+    }
+}
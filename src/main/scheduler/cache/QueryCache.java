@@ -0,0 +1,185 @@
+package scheduler.cache;
+
+import scheduler.util.Util;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// A bounded read-through cache of query results, kept by the cached repositories in front of the database.
+//
+// An entry lives for QueryCacheTtlMs after it was loaded. Once a cache holds more than QueryCacheSize entries,
+// the least recently used is evicted. Every entry is tagged with what its result depends on (a username, a date,
+// a vaccine), and each write invalidates exactly the entries carrying its tags.
+//
+// A miss leaves a placeholder while the query runs, and the result is only kept if the placeholder is still
+// there when it returns. A load that raced with an invalidation therefore never leaves a stale entry behind,
+// and loads of other keys are unaffected.
+public final class QueryCache<K, V> {
+    public static final int SIZE = Util.getConfigInt("QueryCacheSize", 10_000);
+    private static final long TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(Util.getConfigLong("QueryCacheTtlMs", 30_000));
+
+    // every cache created, for the stats command
+    private static final List<QueryCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    public interface Loader<V> {
+        // null to return nothing from the cache, e.g. a result too large to keep
+        V load() throws SQLException;
+    }
+
+    private final String name;
+    // in access order, so the first entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Object, Set<K>> byTag = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public QueryCache(String name) {
+        if (SIZE < 0) {
+            throw new IllegalArgumentException("QueryCacheSize must not be negative");
+        }
+        this.name = name;
+        caches.add(this);
+    }
+
+    public static boolean isEnabled() {
+        return SIZE > 0;
+    }
+
+    public static List<QueryCache<?, ?>> all() {
+        return caches;
+    }
+
+    // the cached result for key, or else the loader's, which is kept under the given tags
+    public V get(K key, Collection<?> tags, Loader<V> loader) throws SQLException {
+        Entry<V> placeholder = new Entry<>(null, tags, 0);
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.value != null && entry.expires - System.nanoTime() > 0) {
+                hits.increment();
+                return entry.value;
+            }
+            remove(key);
+            put(key, placeholder);
+        }
+        misses.increment();
+        V value;
+        try {
+            value = loader.load();
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                if (entries.get(key) == placeholder) {
+                    remove(key);
+                }
+            }
+            throw e;
+        }
+        synchronized (this) {
+            if (entries.get(key) == placeholder) {
+                remove(key);
+                if (value != null) {
+                    put(key, new Entry<>(value, tags, System.nanoTime() + TTL_NANOS));
+                }
+            }
+        }
+        return value;
+    }
+
+    // drop every entry tagged with tag, including loads still running
+    public synchronized void invalidate(Object tag) {
+        Set<K> keys = byTag.remove(tag);
+        if (keys != null) {
+            for (K key : new ArrayList<>(keys)) {
+                remove(key);
+                invalidations.increment();
+            }
+        }
+    }
+
+    public void invalidateAll(Collection<?> tags) {
+        for (Object tag : tags) {
+            invalidate(tag);
+        }
+    }
+
+    private void put(K key, Entry<V> entry) {
+        entries.put(key, entry);
+        for (Object tag : entry.tags) {
+            byTag.computeIfAbsent(tag, k -> new HashSet<>()).add(key);
+        }
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > SIZE && eldest.hasNext()) {
+            Map.Entry<K, Entry<V>> evicted = eldest.next();
+            eldest.remove();
+            untag(evicted.getKey(), evicted.getValue());
+            evictions.increment();
+        }
+    }
+
+    private void remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry != null) {
+            untag(key, entry);
+        }
+    }
+
+    private void untag(K key, Entry<V> entry) {
+        for (Object tag : entry.tags) {
+            Set<K> keys = byTag.get(tag);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                byTag.remove(tag);
+            }
+        }
+    }
+
+    // Getters
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        long lookups = hits.sum() + misses.sum();
+        return String.format("QueryCache{name=%s, size=%d, hits=%d, misses=%d, hitRate=%.3f, evictions=%d, " +
+                        "invalidations=%d}", name, getSize(), hits.sum(), misses.sum(),
+                lookups == 0 ? 0 : (double) hits.sum() / lookups, evictions.sum(), invalidations.sum());
+    }
+
+    // a loaded result, or a placeholder (null value) while its query runs
+    private static class Entry<V> {
+        private final V value;
+        private final Collection<?> tags;
+        private final long expires;
+
+        Entry(V value, Collection<?> tags, long expires) {
+            this.value = value;
+            this.tags = tags;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package scheduler.cache;
+
+import scheduler.repository.AccountRepository;
+import scheduler.repository.Storage;
+import scheduler.util.Util;
+
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// A Bloom filter over the usernames of one role, so account creation can tell that a username is definitely
+// free without asking the database. "Maybe taken" still has to be confirmed with a key-only lookup; with the
+// default sizing that happens for about 1% of free usernames until UsernameFilterCapacity names are stored.
+//
+// The filter is warmed once at startup from every stored username and then kept current by every path that
+// creates accounts. Until it is loaded it answers "maybe" for everything.
+//
+// Usernames are hashed lower-cased, since SQL Server's default collation compares them case-insensitively: a case
+// variant of a stored name must come out "maybe taken" and be settled by the lookup, like the name itself.
+public class UsernameFilter {
+    private static final int CAPACITY = Util.getConfigInt("UsernameFilterCapacity", 1_000_000);
+    private static final UsernameFilter patients = new UsernameFilter(CAPACITY, 0.01);
+    private static final UsernameFilter caregivers = new UsernameFilter(CAPACITY, 0.01);
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private volatile boolean loaded = false;
+
+    private UsernameFilter(int capacity, double falsePositiveRate) {
+        // the textbook optimum: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions
+        long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((m + 63) / 64));
+        this.bitCount = bits.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) m / capacity * Math.log(2)));
+    }
+
+    public static UsernameFilter patients() {
+        return patients;
+    }
+
+    public static UsernameFilter caregivers() {
+        return caregivers;
+    }
+
+    // Add every stored username of the role
+    public static void load() throws SQLException {
+        patients.load(Storage.getInstance().patients());
+        caregivers.load(Storage.getInstance().caregivers());
+    }
+
+    private synchronized void load(AccountRepository accounts) throws SQLException {
+        accounts.forEachUsername(this::add);
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // false means no account has this username; true means there may be one
+    public boolean mightContain(String username) {
+        if (!loaded) {
+            return true;
+        }
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(String username) {
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    private long index(int combined) {
+        // flip negative values instead of taking the absolute value, which overflows for MIN_VALUE
+        return (combined < 0 ? ~combined : combined) % bitCount;
+    }
+
+    // 64-bit FNV-1a over the lower-cased characters, finished with a murmur3 mix so both halves are usable as hashes
+    private static long hash(String username) {
+        username = username.toLowerCase(Locale.ROOT);
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            h ^= username.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
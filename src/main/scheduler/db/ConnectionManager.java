@@ -1,41 +1,94 @@
 package scheduler.db;
 
+import scheduler.util.Util;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 public class ConnectionManager {
 
-    private final String driverName = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
-    private final String connectionUrl = "jdbc:sqlserver://" + System.getenv("Server") +
-            ".database.windows.net:1433;database=" + System.getenv("DBName");
-    private final String userName = System.getenv("UserID");
-    private final String userPass = System.getenv("Password");
+    // ConnectionUrl (and DriverName) point the scheduler at another database, e.g. an embedded one for
+    // benchmarks; by default it connects to the Azure SQL Server named by the Server and DBName variables
+    private static final String driverName = Util.getConfig("DriverName",
+            "com.microsoft.sqlserver.jdbc.SQLServerDriver");
+    private static final String connectionUrl = Util.getConfig("ConnectionUrl", "jdbc:sqlserver://" +
+            System.getenv("Server") + ".database.windows.net:1433;database=" + System.getenv("DBName"));
+    private static final String userName = Util.getConfig("UserID", null);
+    private static final String userPass = Util.getConfig("Password", null);
 
-    private Connection con = null;
+    // every ConnectionManager borrows from this one process-wide pool, so opening and closing a
+    // "connection" is a cheap hand-off instead of a fresh TLS handshake with the server
+    private static final ConnectionPool pool;
 
-    public ConnectionManager() {
+    static {
         try {
             Class.forName(driverName);
         } catch (ClassNotFoundException e) {
             System.out.println(e.toString());
         }
+        pool = new ConnectionPool.ConnectionPoolBuilder(connectionUrl, userName, userPass)
+                .maxSize(Util.getConfigInt("PoolMaxSize", 10))
+                .minIdle(Util.getConfigInt("PoolMinIdle", 2))
+                .waitTimeoutMillis(Util.getConfigLong("PoolWaitTimeoutMs", 30_000))
+                .idleTimeoutMillis(Util.getConfigLong("PoolIdleTimeoutMs", 600_000))
+                .maxLifetimeMillis(Util.getConfigLong("PoolMaxLifetimeMs", 1_800_000))
+                .validationIntervalMillis(Util.getConfigLong("PoolValidationIntervalMs", 30_000))
+                .statementCacheSize(Util.getConfigInt("StatementCacheSize", 32))
+                .build();
+    }
+
+    private PooledConnection pooled = null;
+    private Connection con = null;
+
+    public ConnectionManager() {
     }
 
     public Connection createConnection() {
         try {
-            con = DriverManager.getConnection(connectionUrl, userName, userPass);
+            pooled = pool.borrow();
+            con = pooled.getConnection();
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return con;
     }
 
+    // A prepared statement from the borrowed connection's statement cache. It belongs to the cache: callers must
+    // not close it, and should close the result sets they read from it.
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return prepareStatement(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        if (this.pooled == null) {
+            throw new SQLException("No connection is open");
+        }
+        return this.pooled.getStatements().prepare(sql, autoGeneratedKeys);
+    }
+
+    // hands the connection back to the pool; the physical connection stays open for the next borrower
     public void closeConnection() {
-        try {
-            this.con.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+        if (this.pooled != null) {
+            pool.release(this.pooled);
+            this.pooled = null;
+            this.con = null;
         }
     }
+
+    // true when talking to SQL Server, whose T-SQL batches let some commands finish in a single round trip;
+    // other databases get portable statements instead
+    public static boolean isSqlServer() {
+        return connectionUrl.startsWith("jdbc:sqlserver:");
+    }
+
+    // close the pool's idle connections; call once nothing else needs the database
+    public static void shutdown() {
+        pool.close();
+    }
+
+    public static PoolStats getPoolStats() {
+        return pool.getStats();
+    }
 }
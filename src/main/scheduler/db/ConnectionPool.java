@@ -0,0 +1,275 @@
+package scheduler.db;
+
+import scheduler.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A bounded pool of JDBC connections.
+// At most maxSize connections are ever checked out; idle connections are kept most-recently-used first so
+// that the warmest connection is handed out next, and the evictor closes the coldest ones.
+public class ConnectionPool {
+    private final String url;
+    private final String userName;
+    private final String userPass;
+    private final int maxSize;
+    private final int minIdle;
+    private final long waitTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final long maxLifetimeNanos;
+    private final long validationIntervalNanos;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    // counters reported through PoolStats
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong retired = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    private ConnectionPool(ConnectionPoolBuilder builder) {
+        this.url = builder.url;
+        this.userName = builder.userName;
+        this.userPass = builder.userPass;
+        this.maxSize = builder.maxSize;
+        this.minIdle = Math.min(builder.minIdle, builder.maxSize);
+        this.waitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.waitTimeoutMillis);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.idleTimeoutMillis);
+        this.maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxLifetimeMillis);
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.validationIntervalMillis);
+        this.validationTimeoutSeconds = builder.validationTimeoutSeconds;
+        this.statementCacheSize = builder.statementCacheSize;
+        this.permits = new Semaphore(builder.maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, builder.evictionIntervalMillis);
+        this.evictor.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Borrow a connection, waiting up to the configured wait timeout for one to be returned
+    PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(waitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            PooledConnection pc = takeIdle();
+            if (pc == null) {
+                pc = open();
+            }
+            recordWait(System.nanoTime() - start);
+            return pc;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Return a borrowed connection. Connections that are broken, expired or left mid-transaction are reset or
+    // retired here so that the next borrower always gets a clean, autocommitting connection.
+    void release(PooledConnection pc) {
+        if (pc == null) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            if (closed || pc.getConnection().isClosed() || pc.isExpired(maxLifetimeNanos, now)) {
+                retire(pc);
+                return;
+            }
+            if (!pc.getConnection().getAutoCommit()) {
+                pc.getConnection().rollback();
+                pc.getConnection().setAutoCommit(true);
+            }
+            pc.markReturned();
+            idle.offerFirst(pc);
+        } catch (SQLException e) {
+            retire(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public PoolStats getStats() {
+        int idleCount = idle.size();
+        return new PoolStats(maxSize - permits.availablePermits(), idleCount, maxSize, created.get(),
+                retired.get(), borrowed.get(), timeouts.get(), totalWaitNanos.get(), maxWaitNanos.get(),
+                statementHits.get(), statementMisses.get());
+    }
+
+    // Close every idle connection and stop handing out new ones; borrowed connections are closed on release
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollLast()) != null) {
+            retire(pc);
+        }
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            long now = System.nanoTime();
+            if (pc.isExpired(maxLifetimeNanos, now)) {
+                retire(pc);
+            } else if (pc.isIdleLongerThan(validationIntervalNanos, now) && !isValid(pc)) {
+                retire(pc);
+            } else {
+                return pc;
+            }
+        }
+        return null;
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection con = DriverManager.getConnection(url, userName, userPass);
+        created.incrementAndGet();
+        return new PooledConnection(con, new StatementCache(con, statementCacheSize, statementHits, statementMisses));
+    }
+
+    private boolean isValid(PooledConnection pc) {
+        try {
+            return pc.getConnection().isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void retire(PooledConnection pc) {
+        retired.incrementAndGet();
+        pc.closeQuietly();
+    }
+
+    private void recordWait(long waited) {
+        borrowed.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        Metrics.getInstance().connectionAcquisition().record(waited);
+    }
+
+    // Runs on the evictor thread: closes connections past their max lifetime and trims connections that have
+    // sat idle for longer than the idle timeout, oldest first, down to minIdle
+    private void evict() {
+        long now = System.nanoTime();
+        int removable = idle.size() - minIdle;
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledConnection pc = it.next();
+            boolean expired = pc.isExpired(maxLifetimeNanos, now);
+            boolean stale = removable > 0 && idleTimeoutNanos > 0 && pc.isIdleLongerThan(idleTimeoutNanos, now);
+            if ((expired || stale) && idle.remove(pc)) {
+                removable--;
+                retire(pc);
+            }
+        }
+    }
+
+    public static class ConnectionPoolBuilder {
+        private final String url;
+        private final String userName;
+        private final String userPass;
+        private int maxSize = 10;
+        private int minIdle = 2;
+        private long waitTimeoutMillis = 30_000;
+        private long idleTimeoutMillis = 600_000;
+        private long maxLifetimeMillis = 1_800_000;
+        private long validationIntervalMillis = 30_000;
+        private int validationTimeoutSeconds = 5;
+        private long evictionIntervalMillis = 30_000;
+        private int statementCacheSize = 32;
+
+        public ConnectionPoolBuilder(String url, String userName, String userPass) {
+            this.url = url;
+            this.userName = userName;
+            this.userPass = userPass;
+        }
+
+        public ConnectionPoolBuilder maxSize(int maxSize) {
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("Pool size must be positive!");
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public ConnectionPoolBuilder minIdle(int minIdle) {
+            this.minIdle = Math.max(0, minIdle);
+            return this;
+        }
+
+        public ConnectionPoolBuilder waitTimeoutMillis(long waitTimeoutMillis) {
+            this.waitTimeoutMillis = waitTimeoutMillis;
+            return this;
+        }
+
+        public ConnectionPoolBuilder idleTimeoutMillis(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        public ConnectionPoolBuilder maxLifetimeMillis(long maxLifetimeMillis) {
+            this.maxLifetimeMillis = maxLifetimeMillis;
+            return this;
+        }
+
+        public ConnectionPoolBuilder validationIntervalMillis(long validationIntervalMillis) {
+            this.validationIntervalMillis = validationIntervalMillis;
+            return this;
+        }
+
+        public ConnectionPoolBuilder validationTimeoutSeconds(int validationTimeoutSeconds) {
+            this.validationTimeoutSeconds = validationTimeoutSeconds;
+            return this;
+        }
+
+        public ConnectionPoolBuilder evictionIntervalMillis(long evictionIntervalMillis) {
+            this.evictionIntervalMillis = evictionIntervalMillis;
+            return this;
+        }
+
+        // prepared statements kept open per connection
+        public ConnectionPoolBuilder statementCacheSize(int statementCacheSize) {
+            if (statementCacheSize <= 0) {
+                throw new IllegalArgumentException("Statement cache size must be positive!");
+            }
+            this.statementCacheSize = statementCacheSize;
+            return this;
+        }
+
+        public ConnectionPool build() {
+            return new ConnectionPool(this);
+        }
+    }
+}
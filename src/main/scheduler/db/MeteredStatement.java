@@ -0,0 +1,707 @@
+package scheduler.db;
+
+import scheduler.metrics.LatencyHistogram;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+// A prepared statement that records the time of every execute call, i.e. every round trip, in the histogram of
+// its SQL text. It is created once, when the statement enters the StatementCache, so timing a call allocates
+// nothing. Everything else is passed straight through.
+class MeteredStatement implements PreparedStatement {
+    private final PreparedStatement statement;
+    private final LatencyHistogram timer;
+
+    MeteredStatement(PreparedStatement statement, LatencyHistogram timer) {
+        this.statement = statement;
+        this.timer = timer;
+    }
+
+    @Override
+    public void addBatch() throws SQLException {
+        statement.addBatch();
+    }
+
+    @Override
+    public void addBatch(String x) throws SQLException {
+        statement.addBatch(x);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        statement.cancel();
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        statement.clearBatch();
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        statement.clearParameters();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        statement.clearWarnings();
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        statement.closeOnCompletion();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        statement.close();
+    }
+
+    @Override
+    public String enquoteIdentifier(String x0, boolean x1) throws SQLException {
+        return statement.enquoteIdentifier(x0, x1);
+    }
+
+    @Override
+    public String enquoteLiteral(String x) throws SQLException {
+        return statement.enquoteLiteral(x);
+    }
+
+    @Override
+    public String enquoteNCharLiteral(String x) throws SQLException {
+        return statement.enquoteNCharLiteral(x);
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeBatch();
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeLargeBatch();
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeLargeUpdate();
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String x0, int[] x1) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeLargeUpdate(x0, x1);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String x0, String[] x1) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeLargeUpdate(x0, x1);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String x0, int x1) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeLargeUpdate(x0, x1);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String x) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeLargeUpdate(x);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeQuery();
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery(String x) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeQuery(x);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate();
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String x0, int[] x1) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate(x0, x1);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String x0, String[] x1) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate(x0, x1);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String x0, int x1) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate(x0, x1);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String x) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate(x);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.execute();
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean execute(String x0, int[] x1) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.execute(x0, x1);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean execute(String x0, String[] x1) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.execute(x0, x1);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean execute(String x0, int x1) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.execute(x0, x1);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean execute(String x) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.execute(x);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return statement.getConnection();
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return statement.getFetchDirection();
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return statement.getFetchSize();
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return statement.getGeneratedKeys();
+    }
+
+    @Override
+    public long getLargeMaxRows() throws SQLException {
+        return statement.getLargeMaxRows();
+    }
+
+    @Override
+    public long getLargeUpdateCount() throws SQLException {
+        return statement.getLargeUpdateCount();
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return statement.getMaxFieldSize();
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return statement.getMaxRows();
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return statement.getMetaData();
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return statement.getMoreResults();
+    }
+
+    @Override
+    public boolean getMoreResults(int x) throws SQLException {
+        return statement.getMoreResults(x);
+    }
+
+    @Override
+    public ParameterMetaData getParameterMetaData() throws SQLException {
+        return statement.getParameterMetaData();
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return statement.getQueryTimeout();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return statement.getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return statement.getResultSetHoldability();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return statement.getResultSetType();
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return statement.getResultSet();
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return statement.getUpdateCount();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return statement.getWarnings();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return statement.isCloseOnCompletion();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return statement.isClosed();
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return statement.isPoolable();
+    }
+
+    @Override
+    public boolean isSimpleIdentifier(String x) throws SQLException {
+        return statement.isSimpleIdentifier(x);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return statement.isWrapperFor(iface);
+    }
+
+    @Override
+    public void setArray(int parameterIndex, Array x1) throws SQLException {
+        statement.setArray(parameterIndex, x1);
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x1, int x2) throws SQLException {
+        statement.setAsciiStream(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x1, long x2) throws SQLException {
+        statement.setAsciiStream(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x1) throws SQLException {
+        statement.setAsciiStream(parameterIndex, x1);
+    }
+
+    @Override
+    public void setBigDecimal(int parameterIndex, BigDecimal x1) throws SQLException {
+        statement.setBigDecimal(parameterIndex, x1);
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x1, int x2) throws SQLException {
+        statement.setBinaryStream(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x1, long x2) throws SQLException {
+        statement.setBinaryStream(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x1) throws SQLException {
+        statement.setBinaryStream(parameterIndex, x1);
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream x1, long x2) throws SQLException {
+        statement.setBlob(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream x1) throws SQLException {
+        statement.setBlob(parameterIndex, x1);
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, Blob x1) throws SQLException {
+        statement.setBlob(parameterIndex, x1);
+    }
+
+    @Override
+    public void setBoolean(int parameterIndex, boolean x1) throws SQLException {
+        statement.setBoolean(parameterIndex, x1);
+    }
+
+    @Override
+    public void setByte(int parameterIndex, byte x1) throws SQLException {
+        statement.setByte(parameterIndex, x1);
+    }
+
+    @Override
+    public void setBytes(int parameterIndex, byte[] x1) throws SQLException {
+        statement.setBytes(parameterIndex, x1);
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader x1, int x2) throws SQLException {
+        statement.setCharacterStream(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader x1, long x2) throws SQLException {
+        statement.setCharacterStream(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader x1) throws SQLException {
+        statement.setCharacterStream(parameterIndex, x1);
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader x1, long x2) throws SQLException {
+        statement.setClob(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader x1) throws SQLException {
+        statement.setClob(parameterIndex, x1);
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Clob x1) throws SQLException {
+        statement.setClob(parameterIndex, x1);
+    }
+
+    @Override
+    public void setCursorName(String x) throws SQLException {
+        statement.setCursorName(x);
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x1, Calendar x2) throws SQLException {
+        statement.setDate(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x1) throws SQLException {
+        statement.setDate(parameterIndex, x1);
+    }
+
+    @Override
+    public void setDouble(int parameterIndex, double x1) throws SQLException {
+        statement.setDouble(parameterIndex, x1);
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean x) throws SQLException {
+        statement.setEscapeProcessing(x);
+    }
+
+    @Override
+    public void setFetchDirection(int x) throws SQLException {
+        statement.setFetchDirection(x);
+    }
+
+    @Override
+    public void setFetchSize(int x) throws SQLException {
+        statement.setFetchSize(x);
+    }
+
+    @Override
+    public void setFloat(int parameterIndex, float x1) throws SQLException {
+        statement.setFloat(parameterIndex, x1);
+    }
+
+    @Override
+    public void setInt(int parameterIndex, int x1) throws SQLException {
+        statement.setInt(parameterIndex, x1);
+    }
+
+    @Override
+    public void setLargeMaxRows(long x) throws SQLException {
+        statement.setLargeMaxRows(x);
+    }
+
+    @Override
+    public void setLong(int parameterIndex, long x1) throws SQLException {
+        statement.setLong(parameterIndex, x1);
+    }
+
+    @Override
+    public void setMaxFieldSize(int x) throws SQLException {
+        statement.setMaxFieldSize(x);
+    }
+
+    @Override
+    public void setMaxRows(int x) throws SQLException {
+        statement.setMaxRows(x);
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader x1, long x2) throws SQLException {
+        statement.setNCharacterStream(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader x1) throws SQLException {
+        statement.setNCharacterStream(parameterIndex, x1);
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader x1, long x2) throws SQLException {
+        statement.setNClob(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader x1) throws SQLException {
+        statement.setNClob(parameterIndex, x1);
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, NClob x1) throws SQLException {
+        statement.setNClob(parameterIndex, x1);
+    }
+
+    @Override
+    public void setNString(int parameterIndex, String x1) throws SQLException {
+        statement.setNString(parameterIndex, x1);
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int x1, String x2) throws SQLException {
+        statement.setNull(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int x1) throws SQLException {
+        statement.setNull(parameterIndex, x1);
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x1, int x2, int x3) throws SQLException {
+        statement.setObject(parameterIndex, x1, x2, x3);
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x1, int x2) throws SQLException {
+        statement.setObject(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x1, SQLType x2, int x3) throws SQLException {
+        statement.setObject(parameterIndex, x1, x2, x3);
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x1, SQLType x2) throws SQLException {
+        statement.setObject(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x1) throws SQLException {
+        statement.setObject(parameterIndex, x1);
+    }
+
+    @Override
+    public void setPoolable(boolean x) throws SQLException {
+        statement.setPoolable(x);
+    }
+
+    @Override
+    public void setQueryTimeout(int x) throws SQLException {
+        statement.setQueryTimeout(x);
+    }
+
+    @Override
+    public void setRef(int parameterIndex, Ref x1) throws SQLException {
+        statement.setRef(parameterIndex, x1);
+    }
+
+    @Override
+    public void setRowId(int parameterIndex, RowId x1) throws SQLException {
+        statement.setRowId(parameterIndex, x1);
+    }
+
+    @Override
+    public void setSQLXML(int parameterIndex, SQLXML x1) throws SQLException {
+        statement.setSQLXML(parameterIndex, x1);
+    }
+
+    @Override
+    public void setShort(int parameterIndex, short x1) throws SQLException {
+        statement.setShort(parameterIndex, x1);
+    }
+
+    @Override
+    public void setString(int parameterIndex, String x1) throws SQLException {
+        statement.setString(parameterIndex, x1);
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x1, Calendar x2) throws SQLException {
+        statement.setTime(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x1) throws SQLException {
+        statement.setTime(parameterIndex, x1);
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x1, Calendar x2) throws SQLException {
+        statement.setTimestamp(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x1) throws SQLException {
+        statement.setTimestamp(parameterIndex, x1);
+    }
+
+    @Override
+    public void setURL(int parameterIndex, URL x1) throws SQLException {
+        statement.setURL(parameterIndex, x1);
+    }
+
+    @Override
+    @Deprecated
+    @SuppressWarnings("deprecation")
+    public void setUnicodeStream(int parameterIndex, InputStream x1, int x2) throws SQLException {
+        statement.setUnicodeStream(parameterIndex, x1, x2);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return statement.unwrap(iface);
+    }
+}
@@ -0,0 +1,146 @@
+package scheduler.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Brings the database schema up to date.
+//
+// create.sql is version 0. Every later change is a numbered script on the classpath, migrations/V1.sql, V2.sql and
+// so on (src/main/resources/migrations), whose first line is a "-- " comment describing it. The SchemaVersion table
+// records each version applied, so a script runs once per database and migrate() only applies the ones after the
+// highest version recorded, in order, stopping at the first number with no script. Statements in a script are
+// separated by semicolons, and lines starting with -- are comments.
+//
+// A CREATE TABLE for a table that already exists is skipped. That lets a table which an earlier create.sql made
+// directly be moved into a migration: databases created from the baseline get it, older ones keep theirs.
+//
+// Each script runs in its own transaction, which starts by recording its version: a second scheduler migrating the
+// same database at the same time blocks on that row and then fails, instead of applying the script twice.
+public class MigrationRunner {
+    private static final String LOCATION = "/migrations/V";
+    private static final Pattern CREATE_TABLE = Pattern.compile("CREATE\\s+TABLE\\s+(\\w+)",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final String createVersionTable = "CREATE TABLE SchemaVersion (" +
+            "Version int NOT NULL, Description varchar(255), AppliedAt datetime, PRIMARY KEY (Version))";
+    private static final String selectVersion = "SELECT COALESCE(MAX(Version), 0) FROM SchemaVersion";
+    private static final String insertVersion = "INSERT INTO SchemaVersion VALUES (?, ?, CURRENT_TIMESTAMP)";
+
+    private MigrationRunner() {
+    }
+
+    // Apply every pending migration to the scheduler's database; returns how many were applied
+    public static int migrate() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        try {
+            return migrate(con);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Apply every pending migration through con, which is left in auto-commit mode
+    public static int migrate(Connection con) throws SQLException {
+        int version = currentVersion(con);
+        int applied = 0;
+        String script;
+        while ((script = load(version + 1)) != null) {
+            version++;
+            String description = describe(script);
+            con.setAutoCommit(false);
+            try (PreparedStatement record = con.prepareStatement(insertVersion);
+                 Statement statement = con.createStatement()) {
+                record.setInt(1, version);
+                record.setString(2, description);
+                record.executeUpdate();
+                for (String sql : statements(script)) {
+                    String table = createdTable(sql);
+                    if (table != null && tableExists(con, table)) {
+                        System.out.println("Table " + table + " already exists, skipped creating it");
+                        continue;
+                    }
+                    statement.execute(sql);
+                }
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw new SQLException("Migration V" + version + " (" + description + ") failed", e);
+            } finally {
+                con.setAutoCommit(true);
+            }
+            System.out.println("Applied migration V" + version + ": " + description);
+            applied++;
+        }
+        return applied;
+    }
+
+    // the highest version applied, creating SchemaVersion on a database that has never been migrated
+    private static int currentVersion(Connection con) throws SQLException {
+        try (Statement statement = con.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery(selectVersion)) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            } catch (SQLException e) {
+                statement.execute(createVersionTable);
+                return 0;
+            }
+        }
+    }
+
+    // the table a CREATE TABLE statement creates, or null for any other statement
+    private static String createdTable(String sql) {
+        Matcher matcher = CREATE_TABLE.matcher(sql);
+        return matcher.lookingAt() ? matcher.group(1) : null;
+    }
+
+    private static boolean tableExists(Connection con, String table) throws SQLException {
+        // databases store unquoted names as written (SQL Server) or upper-cased (H2)
+        for (String name : List.of(table, table.toUpperCase(Locale.ROOT))) {
+            try (ResultSet resultSet = con.getMetaData().getTables(con.getCatalog(), null, name,
+                    new String[]{"TABLE"})) {
+                if (resultSet.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // the script for version, or null if there is none
+    private static String load(int version) throws SQLException {
+        try (InputStream in = MigrationRunner.class.getResourceAsStream(LOCATION + version + ".sql")) {
+            return in == null ? null : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration V" + version, e);
+        }
+    }
+
+    private static String describe(String script) {
+        String first = script.strip().lines().findFirst().orElse("");
+        return first.startsWith("--") ? first.substring(2).strip() : "";
+    }
+
+    static List<String> statements(String script) {
+        StringBuilder code = new StringBuilder();
+        script.lines().filter(line -> !line.strip().startsWith("--")).forEach(line -> code.append(line).append('\n'));
+        List<String> statements = new ArrayList<>();
+        for (String sql : code.toString().split(";")) {
+            if (!sql.isBlank()) {
+                statements.add(sql.strip());
+            }
+        }
+        return statements;
+    }
+}
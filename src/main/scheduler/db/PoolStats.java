@@ -0,0 +1,97 @@
+package scheduler.db;
+
+// an immutable snapshot of the ConnectionPool counters
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int maxSize;
+    private final long created;
+    private final long retired;
+    private final long borrowed;
+    private final long timeouts;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+    private final long statementHits;
+    private final long statementMisses;
+
+    PoolStats(int active, int idle, int maxSize, long created, long retired, long borrowed, long timeouts,
+              long totalWaitNanos, long maxWaitNanos, long statementHits, long statementMisses) {
+        this.active = active;
+        this.idle = idle;
+        this.maxSize = maxSize;
+        this.created = created;
+        this.retired = retired;
+        this.borrowed = borrowed;
+        this.timeouts = timeouts;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.statementHits = statementHits;
+        this.statementMisses = statementMisses;
+    }
+
+    // Getters
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getRetired() {
+        return retired;
+    }
+
+    public long getBorrowed() {
+        return borrowed;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public double getAverageWaitMillis() {
+        return borrowed == 0 ? 0 : totalWaitNanos / 1e6 / borrowed;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos / 1e6;
+    }
+
+    public long getStatementHits() {
+        return statementHits;
+    }
+
+    public long getStatementMisses() {
+        return statementMisses;
+    }
+
+    public double getStatementHitRate() {
+        long total = statementHits + statementMisses;
+        return total == 0 ? 0 : (double) statementHits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStats{" +
+                "active=" + active +
+                ", idle=" + idle +
+                ", maxSize=" + maxSize +
+                ", created=" + created +
+                ", retired=" + retired +
+                ", borrowed=" + borrowed +
+                ", timeouts=" + timeouts +
+                ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis()) +
+                ", maxWaitMs=" + String.format("%.3f", getMaxWaitMillis()) +
+                ", statementHitRate=" + String.format("%.3f", getStatementHitRate()) +
+                '}';
+    }
+}
@@ -0,0 +1,57 @@
+package scheduler.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// a physical connection owned by the ConnectionPool, together with the bookkeeping
+// the pool needs to decide when it should be validated or retired
+class PooledConnection {
+    private final Connection connection;
+    private final StatementCache statements;
+    private final long createdAt;
+    private long lastReturnedAt;
+
+    PooledConnection(Connection connection, StatementCache statements) {
+        this.connection = connection;
+        this.statements = statements;
+        this.createdAt = System.nanoTime();
+        this.lastReturnedAt = this.createdAt;
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    StatementCache getStatements() {
+        return statements;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLastReturnedAt() {
+        return lastReturnedAt;
+    }
+
+    void markReturned() {
+        this.lastReturnedAt = System.nanoTime();
+    }
+
+    boolean isExpired(long maxLifetimeNanos, long now) {
+        return maxLifetimeNanos > 0 && now - createdAt >= maxLifetimeNanos;
+    }
+
+    boolean isIdleLongerThan(long nanos, long now) {
+        return now - lastReturnedAt >= nanos;
+    }
+
+    void closeQuietly() {
+        statements.close();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
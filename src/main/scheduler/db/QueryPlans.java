@@ -0,0 +1,92 @@
+package scheduler.db;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// The plans the database chooses for the scheduler's hot queries, for the explain command. The queries mirror the
+// statements the jdbc repositories run, with sample values in place of their parameters. SQL Server reports the
+// estimated plan through SHOWPLAN_TEXT without running the query; other databases through EXPLAIN.
+public class QueryPlans {
+    private record Query(String name, String sql) {
+    }
+
+    private static final List<Query> QUERIES = List.of(
+            new Query("show_appointments (caregiver)",
+                    "SELECT A.Id, A.CaregiverName, A.PatientName, A.VaccineName, A.Time FROM Appointments AS A " +
+                    "WHERE A.CaregiverName = 'caregiver' AND A.Id > 0 ORDER BY A.Id " +
+                    "OFFSET 0 ROWS FETCH NEXT 50 ROWS ONLY"),
+            new Query("show_appointments (patient)",
+                    "SELECT A.Id, A.CaregiverName, A.PatientName, A.VaccineName, A.Time FROM Appointments AS A " +
+                    "WHERE A.PatientName = 'patient' AND A.Id > 0 ORDER BY A.Id " +
+                    "OFFSET 0 ROWS FETCH NEXT 50 ROWS ONLY"),
+            new Query("search_caregiver_schedule",
+                    "SELECT A.Username FROM Availabilities AS A WHERE A.Time = '2030-01-01' AND A.Slots > 0 " +
+                    "ORDER BY A.Username"),
+            new Query("search_caregiver_schedule (range)",
+                    "SELECT Time, COUNT(*) FROM Availabilities WHERE Time >= '2030-01-01' AND Time <= '2030-12-31' " +
+                    "AND Slots > 0 GROUP BY Time ORDER BY Time"),
+            new Query("reserve (first free caregivers)",
+                    "SELECT Username, Slots FROM Availabilities WHERE Time = '2030-01-01' AND Slots > 0 " +
+                    "ORDER BY Username OFFSET 0 ROWS FETCH NEXT 64 ROWS ONLY"),
+            new Query("cancel_day",
+                    "SELECT Id, CaregiverName, PatientName, VaccineName, Time FROM Appointments " +
+                    "WHERE CaregiverName = 'caregiver' AND Time = '2030-01-01' ORDER BY Id"),
+            new Query("caregiver load",
+                    "SELECT CaregiverName, COUNT(*) FROM Appointments GROUP BY CaregiverName"));
+
+    private QueryPlans() {
+    }
+
+    public static void print(PrintStream out) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        try (Statement statement = con.createStatement()) {
+            if (ConnectionManager.isSqlServer()) {
+                printShowplan(statement, out);
+            } else {
+                printExplain(statement, out);
+            }
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // SHOWPLAN_TEXT answers each query with its text and then one row per operator of the plan tree
+    private static void printShowplan(Statement statement, PrintStream out) throws SQLException {
+        statement.execute("SET SHOWPLAN_TEXT ON");
+        try {
+            for (Query query : QUERIES) {
+                out.println(query.name() + ":");
+                boolean isResultSet = statement.execute(query.sql());
+                while (isResultSet || statement.getUpdateCount() != -1) {
+                    if (isResultSet) {
+                        try (ResultSet resultSet = statement.getResultSet()) {
+                            while (resultSet.next()) {
+                                out.println("  " + resultSet.getString(1).strip());
+                            }
+                        }
+                    }
+                    isResultSet = statement.getMoreResults();
+                }
+            }
+        } finally {
+            // the connection goes back to the pool, where it must run queries again
+            statement.execute("SET SHOWPLAN_TEXT OFF");
+        }
+    }
+
+    private static void printExplain(Statement statement, PrintStream out) throws SQLException {
+        for (Query query : QUERIES) {
+            out.println(query.name() + ":");
+            try (ResultSet resultSet = statement.executeQuery("EXPLAIN " + query.sql())) {
+                while (resultSet.next()) {
+                    resultSet.getString(1).lines().forEach(line -> out.println("  " + line));
+                }
+            }
+        }
+    }
+}
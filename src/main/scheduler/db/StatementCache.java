@@ -0,0 +1,72 @@
+package scheduler.db;
+
+import scheduler.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The prepared statements of one pooled connection, keyed by SQL text and kept in least-recently-used order.
+// Reusing a statement skips the prepare round trip and lets the server reuse its plan; the least recently used
+// one is closed once more than capacity are open, and all of them are closed with the connection.
+//
+// Like the connection itself, a cache is only ever used by whoever has borrowed the connection, so it needs no
+// locking of its own.
+class StatementCache {
+    private final Connection connection;
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    StatementCache(Connection connection, int capacity, AtomicLong hits, AtomicLong misses) {
+        this.connection = connection;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        PreparedStatement statement = statements.get(key);
+        if (statement != null && !statement.isClosed()) {
+            hits.incrementAndGet();
+            // a previous borrower may have failed halfway through filling it in
+            statement.clearParameters();
+            statement.clearBatch();
+            return statement;
+        }
+        misses.incrementAndGet();
+        statement = new MeteredStatement(connection.prepareStatement(sql, autoGeneratedKeys),
+                Metrics.getInstance().statement(sql));
+        statements.put(key, statement);
+        return statement;
+    }
+
+    void close() {
+        statements.values().forEach(StatementCache::closeQuietly);
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private record Key(String sql, int autoGeneratedKeys) {
+    }
+}
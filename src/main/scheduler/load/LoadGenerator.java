@@ -0,0 +1,450 @@
+package scheduler.load;
+
+import scheduler.Scheduler;
+import scheduler.cache.DoseInventory;
+import scheduler.cache.QueryCache;
+import scheduler.metrics.LatencyHistogram;
+import scheduler.metrics.LatencySnapshot;
+import scheduler.model.AssignmentStrategy;
+import scheduler.repository.AppointmentQuery;
+import scheduler.repository.ReservationPipeline;
+import scheduler.repository.Storage;
+import scheduler.repository.journal.CommandJournal;
+import scheduler.server.Session;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drives many concurrent simulated users through Scheduler.execute, the same entry point the console and the
+// server use, and reports throughput, latency percentiles and error counts per command. Afterwards it checks the
+// stored data for overbooked caregivers and lost or oversold doses.
+//
+// It runs in-process against the memory storage backend unless Storage is set; the jdbc backend is only
+// accepted with an explicit ConnectionUrl, so a load test never reaches the production database by accident.
+//
+//   java -cp vaccine-scheduler-java.jar scheduler.load.LoadGenerator [options]
+//     --users <n>        concurrent simulated patients (default 50)
+//     --duration <s>     seconds to run the mix for (default 30)
+//     --think-ms <ms>    mean pause between a user's commands, uniformly jittered (default 0)
+//     --rate <ops/s>     total arrival rate, spread evenly over the users; latency is then measured from each
+//                        command's scheduled start, so a slow backend cannot hide its queueing (default: closed loop)
+//     --caregivers <n>   caregivers, each available on every day (default 20)
+//     --slots <n>        appointments each caregiver can take per day (default 1)
+//     --days <n>         days starting tomorrow that can be searched and reserved (default 30)
+//     --doses <n>        initial doses of each vaccine (default 1000)
+//     --mix <spec>       command weights, e.g. search=50,reserve=20,show=30 (the default)
+//     --script <path>    replay a command script instead of the generated mix (see below)
+//     --iterations <n>   passes over the script per user (default: until --duration is up)
+//     --seed <n>         random seed (default 1)
+//
+// Caregivers (loadcaregiver0...) and vaccines are set up before the clock starts, for scripts too. A script
+// holds one command per line in the console grammar. {user} becomes the user's name, {i} their number, {date} a
+// random day in range and {vaccine} a random vaccine; lines starting with "@once " run only on the first pass.
+// Blank lines and lines starting with # are skipped.
+public class LoadGenerator {
+    private static final String PASSWORD = "Load-Passw0rd!";
+    private static final String[] VACCINES = {"Moderna", "Pfizer", "Novavax"};
+
+    // output that means the command was refused for a legitimate reason
+    private static final String[] REJECTIONS = {"No caregiver is available", "Not enough available doses",
+            "Username taken"};
+    // output that means the command went wrong
+    private static final String[] ERRORS = {"try again", "failed", "Failed", "Error", "Invalid", "Please login",
+            "Could not", "Unknown option", "Please enter a valid", "already logged in"};
+
+    private int users = 50;
+    private int durationSeconds = 30;
+    private long thinkMillis = 0;
+    private double rate = 0;
+    private int caregivers = 20;
+    private int slots = 1;
+    private int days = 30;
+    private int doses = 1000;
+    private int searchWeight = 50;
+    private int reserveWeight = 20;
+    private int showWeight = 30;
+    private List<String> script = null;
+    private int iterations = 0;
+    private long seed = 1;
+
+    private final LocalDate firstDay = LocalDate.now().plusDays(1);
+    private final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> errors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> rejections = new ConcurrentHashMap<>();
+    private final AtomicLong reserved = new AtomicLong();
+    private final List<String> failures = new ArrayList<>();
+    private int fewestAppointments = Integer.MAX_VALUE;
+    private int mostAppointments = 0;
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("Storage") == null && System.getenv("Storage") == null) {
+            System.setProperty("Storage", "memory");
+        }
+        if (!Storage.getInstance().getKind().equals("memory")
+                && System.getProperty("ConnectionUrl") == null && System.getenv("ConnectionUrl") == null) {
+            System.out.println("Refusing to load-test the default database; set ConnectionUrl to a local one");
+            System.exit(2);
+        }
+        LoadGenerator generator = new LoadGenerator();
+        try {
+            generator.parse(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(2);
+        }
+        Scheduler.migrateSchema();
+        Scheduler.openJournal();
+        Scheduler.loadIndexes();
+        boolean passed = generator.run();
+        Scheduler.shutdown();
+        System.exit(passed ? 0 : 1);
+    }
+
+    private void parse(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--users" -> users = Integer.parseInt(value);
+                case "--duration" -> durationSeconds = Integer.parseInt(value);
+                case "--think-ms" -> thinkMillis = Long.parseLong(value);
+                case "--rate" -> rate = Double.parseDouble(value);
+                case "--caregivers" -> caregivers = Integer.parseInt(value);
+                case "--slots" -> slots = Integer.parseInt(value);
+                case "--days" -> days = Integer.parseInt(value);
+                case "--doses" -> doses = Integer.parseInt(value);
+                case "--mix" -> parseMix(value);
+                case "--script" -> script = Files.readAllLines(Paths.get(value));
+                case "--iterations" -> iterations = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (users <= 0 || caregivers <= 0 || slots <= 0 || days <= 0) {
+            throw new IllegalArgumentException("--users, --caregivers, --slots and --days must be positive");
+        }
+    }
+
+    private void parseMix(String spec) {
+        searchWeight = reserveWeight = showWeight = 0;
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            int weight = Integer.parseInt(kv[1]);
+            switch (kv[0]) {
+                case "search" -> searchWeight = weight;
+                case "reserve" -> reserveWeight = weight;
+                case "show" -> showWeight = weight;
+                default -> throw new IllegalArgumentException("Unknown command in --mix: " + kv[0]);
+            }
+        }
+        if (searchWeight + reserveWeight + showWeight <= 0) {
+            throw new IllegalArgumentException("--mix needs a positive weight");
+        }
+    }
+
+    // returns false if any correctness check failed
+    private boolean run() throws Exception {
+        long setupStart = System.nanoTime();
+        setUp();
+        double setupSeconds = (System.nanoTime() - setupStart) / 1e9;
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < users; i++) {
+                int user = i;
+                executor.submit(() -> {
+                    try {
+                        simulate(user, deadline);
+                    } catch (RuntimeException e) {
+                        count(errors, "uncaught " + e.getClass().getSimpleName());
+                        e.printStackTrace();
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        check();
+        report(setupSeconds, seconds);
+        return failures.isEmpty();
+    }
+
+    // Vaccines, and caregivers available on every day in range; runs before the clock starts
+    private void setUp() throws InterruptedException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < caregivers; i++) {
+                int caregiver = i;
+                executor.submit(() -> {
+                    Capture own = new Capture();
+                    Session session = new Session(own.out);
+                    String name = "loadcaregiver" + caregiver;
+                    execute(session, own, "create_caregiver " + name + " " + PASSWORD, 0);
+                    execute(session, own, "login_caregiver " + name + " " + PASSWORD, 0);
+                    execute(session, own, "upload_availability " + firstDay + " " + firstDay.plusDays(days - 1) +
+                            " 1111111 " + slots, 0);
+                });
+            }
+        }
+        Capture capture = new Capture();
+        Session admin = new Session(capture.out);
+        execute(admin, capture, "create_caregiver loadadmin " + PASSWORD, 0);
+        execute(admin, capture, "login_caregiver loadadmin " + PASSWORD, 0);
+        for (String vaccine : VACCINES) {
+            execute(admin, capture, "add_doses " + vaccine + " " + doses, 0);
+        }
+    }
+
+    private void simulate(int user, long deadline) {
+        SplittableRandom random = new SplittableRandom(seed * 1_000_003 + user);
+        Capture capture = new Capture();
+        Session session = new Session(capture.out);
+        String name = "loaduser" + user;
+        if (script == null) {
+            execute(session, capture, "create_patient " + name + " " + PASSWORD, 0);
+            execute(session, capture, "login_patient " + name + " " + PASSWORD, 0);
+        }
+
+        // with a target rate, each user starts a command every users / rate seconds
+        long interval = rate > 0 ? (long) (users / rate * 1e9) : 0;
+        long scheduled = System.nanoTime() + (interval > 0 ? random.nextLong(interval) : 0);
+        for (int pass = 0; System.nanoTime() < deadline && (iterations == 0 || pass < iterations); pass++) {
+            List<String> commands = script == null ? List.of(nextCommand(random)) : scriptPass(pass);
+            for (String command : commands) {
+                if (System.nanoTime() >= deadline) {
+                    return;
+                }
+                if (interval > 0) {
+                    sleepUntil(scheduled);
+                }
+                execute(session, capture, expand(command, user, name, random), interval > 0 ? scheduled : 0);
+                scheduled += interval;
+                if (thinkMillis > 0) {
+                    sleepUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(random.nextLong(2 * thinkMillis + 1)));
+                }
+            }
+        }
+    }
+
+    private String nextCommand(SplittableRandom random) {
+        int pick = random.nextInt(searchWeight + reserveWeight + showWeight);
+        if (pick < searchWeight) {
+            return "search_caregiver_schedule {date}";
+        } else if (pick < searchWeight + reserveWeight) {
+            return "reserve {date} {vaccine}";
+        }
+        return "show_appointments";
+    }
+
+    private List<String> scriptPass(int pass) {
+        List<String> commands = new ArrayList<>();
+        for (String line : script) {
+            String command = line.trim();
+            if (command.isEmpty() || command.startsWith("#")) {
+                continue;
+            }
+            if (command.startsWith("@once ")) {
+                if (pass > 0) {
+                    continue;
+                }
+                command = command.substring("@once ".length());
+            }
+            commands.add(command);
+        }
+        return commands;
+    }
+
+    private String expand(String command, int user, String name, SplittableRandom random) {
+        if (command.indexOf('{') < 0) {
+            return command;
+        }
+        return command.replace("{user}", name)
+                .replace("{i}", Integer.toString(user))
+                .replace("{date}", firstDay.plusDays(random.nextInt(days)).toString())
+                .replace("{vaccine}", VACCINES[random.nextInt(VACCINES.length)]);
+    }
+
+    // Run one command and classify what it printed. With a schedule, latency counts from the scheduled start.
+    private void execute(Session session, Capture capture, String command, long scheduled) {
+        String operation = command.split(" ", 2)[0];
+        capture.buffer.reset();
+        long start = System.nanoTime();
+        Scheduler.execute(command, session);
+        long end = System.nanoTime();
+        latencies.computeIfAbsent(operation, LatencyHistogram::new)
+                .record(end - (scheduled > 0 ? Math.min(scheduled, start) : start));
+
+        String output = capture.buffer.toString();
+        for (String rejection : REJECTIONS) {
+            if (output.contains(rejection)) {
+                count(rejections, operation + ": " + rejection);
+                return;
+            }
+        }
+        for (String error : ERRORS) {
+            if (output.contains(error)) {
+                count(errors, operation + ": " + output.lines().findFirst().orElse(""));
+                return;
+            }
+        }
+        if (output.startsWith("Appointment ID")) {
+            reserved.incrementAndGet();
+        }
+    }
+
+    private static void count(ConcurrentHashMap<String, AtomicLong> counters, String key) {
+        counters.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        long wait = nanoTime - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Correctness checks over the stored data, once every user has stopped
+    private void check() throws SQLException {
+        Storage storage = Storage.getInstance();
+        DoseInventory.getInstance().flush();
+
+        // every slot the load caregivers opened is either booked or still free: never both, and never overbooked
+        Map<String, Map<LocalDate, Integer>> booked = new HashMap<>();
+        Map<String, Integer> bookedDoses = new TreeMap<>();
+        AppointmentQuery all = new AppointmentQuery.AppointmentQueryBuilder().build();
+        List<String> caregiverNames = new ArrayList<>();
+        storage.caregivers().forEachUsername(caregiverNames::add);
+        long appointments = 0;
+        for (String caregiver : caregiverNames) {
+            Map<LocalDate, Integer> dates = new HashMap<>();
+            int[] count = new int[1];
+            storage.appointments().forEachOfCaregiver(caregiver, all, appointment -> {
+                dates.merge(appointment.getTime().toLocalDate(), 1, Integer::sum);
+                bookedDoses.merge(appointment.getVaccineName(), 1, Integer::sum);
+                count[0]++;
+            });
+            appointments += count[0];
+            booked.put(caregiver, dates);
+            if (caregiver.startsWith("loadcaregiver")) {
+                fewestAppointments = Math.min(fewestAppointments, count[0]);
+                mostAppointments = Math.max(mostAppointments, count[0]);
+            }
+        }
+        Map<String, Map<LocalDate, Integer>> free = new HashMap<>();
+        storage.availabilities().forEach((date, caregiver, left) ->
+                free.computeIfAbsent(caregiver, k -> new HashMap<>()).put(date.toLocalDate(), left));
+        for (int i = 0; i < caregivers; i++) {
+            String caregiver = "loadcaregiver" + i;
+            for (int day = 0; day < days; day++) {
+                LocalDate d = firstDay.plusDays(day);
+                int taken = booked.getOrDefault(caregiver, Map.of()).getOrDefault(d, 0);
+                int left = free.getOrDefault(caregiver, Map.of()).getOrDefault(d, 0);
+                if (taken + left != slots) {
+                    failures.add("Caregiver " + caregiver + " has " + taken + " appointment(s) and " + left +
+                            " free slot(s) on " + d + " out of " + slots);
+                }
+            }
+        }
+
+        // every booking was stored, and doses were neither oversold nor lost
+        if (script == null && appointments != reserved.get()) {
+            failures.add(reserved.get() + " reservations succeeded but " + appointments + " appointments are stored");
+        }
+        Map<String, Integer> stored = storage.vaccines().findAll();
+        Map<String, Integer> inMemory = DoseInventory.getInstance().snapshot();
+        for (Map.Entry<String, Integer> vaccine : stored.entrySet()) {
+            String name = vaccine.getKey();
+            int left = vaccine.getValue();
+            if (left < 0) {
+                failures.add(name + " has " + left + " doses");
+            }
+            if (DoseInventory.getInstance().isLoaded() && inMemory.getOrDefault(name, left) != left) {
+                failures.add(name + " has " + left + " doses stored but " + inMemory.get(name) + " in memory");
+            }
+            if (script == null && left != doses - bookedDoses.getOrDefault(name, 0)) {
+                failures.add(name + " has " + left + " doses left after " + bookedDoses.getOrDefault(name, 0) +
+                        " of " + doses + " were booked");
+            }
+        }
+    }
+
+    private void report(double setupSeconds, double seconds) {
+        System.out.println("Storage: " + Storage.getInstance().getKind() + ", users: " + users +
+                (rate > 0 ? ", target rate: " + rate + " ops/s" : "") +
+                (thinkMillis > 0 ? ", think time: " + thinkMillis + "ms" : ""));
+        System.out.printf("Setup: %.1fs%n", setupSeconds);
+        long total = 0;
+        List<LatencySnapshot> snapshots = new ArrayList<>();
+        latencies.values().forEach(histogram -> snapshots.add(histogram.snapshot()));
+        snapshots.sort((a, b) -> a.getName().compareTo(b.getName()));
+        for (LatencySnapshot snapshot : snapshots) {
+            total += snapshot.getCount();
+        }
+        System.out.printf("Ran for %.1fs: %d commands, %.1f commands/s, %d reservations%n", seconds, total,
+                total / seconds, reserved.get());
+        for (LatencySnapshot snapshot : snapshots) {
+            System.out.println("  " + snapshot.getName() + " " + snapshot);
+        }
+        AssignmentStrategy strategy = AssignmentStrategy.getConfigured();
+        System.out.println("Caregiver assignment: " + strategy + ", appointments per caregiver min=" +
+                fewestAppointments + " max=" + mostAppointments + ", candidates taken by others: " +
+                strategy.getTakenByOthers() + " of " + strategy.getCandidates());
+        ReservationPipeline pipeline = ReservationPipeline.getInstance();
+        if (pipeline.isEnabled()) {
+            System.out.printf("Reservation pipeline: %d batches, %.1f reservations per batch%n",
+                    pipeline.getBatches(), pipeline.getAverageBatchSize());
+        }
+        for (QueryCache<?, ?> cache : QueryCache.all()) {
+            System.out.println(cache);
+        }
+        CommandJournal journal = CommandJournal.getInstance();
+        if (journal.isOpen()) {
+            System.out.printf("Command journal: %d appended, %d syncs, %.1f records per sync%n",
+                    journal.getAppended(), journal.getSyncs(),
+                    journal.getSyncs() == 0 ? 0 : (double) journal.getAppended() / journal.getSyncs());
+        }
+        print("Rejected", rejections);
+        print("Errors", errors);
+        if (failures.isEmpty()) {
+            System.out.println("Checks passed");
+        } else {
+            System.out.println("Checks FAILED:");
+            failures.forEach(failure -> System.out.println("  " + failure));
+        }
+    }
+
+    private static void print(String title, ConcurrentHashMap<String, AtomicLong> counters) {
+        long total = counters.values().stream().mapToLong(AtomicLong::get).sum();
+        System.out.println(title + ": " + total);
+        new TreeMap<>(counters).forEach((key, count) -> System.out.println("  " + count + " " + key));
+    }
+
+    // what a user's session printed for the current command
+    private static class Capture {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final PrintStream out = new PrintStream(buffer, true);
+    }
+}
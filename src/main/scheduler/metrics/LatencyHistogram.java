@@ -0,0 +1,120 @@
+package scheduler.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// A lock-free latency histogram over nanosecond values.
+//
+// Buckets are log-linear: every power of two is split into 16 equal sub-buckets, so any percentile is reported
+// to within about 6% of the true value, and the whole range from 1ns to centuries fits in under 1000 counters.
+// record() only does atomic increments on preallocated arrays; it never allocates or blocks.
+public class LatencyHistogram implements LatencyMXBean {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Read the counters into an immutable snapshot. Recording may carry on meanwhile, so the totals can be off
+    // by the few values recorded while the snapshot was taken.
+    public LatencySnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        long max = maxNanos.get();
+        // a bucket's midpoint can lie above the largest value actually recorded in it
+        return new LatencySnapshot(name, total, totalNanos.get(), max, Math.min(max, percentile(copy, total, 0.50)),
+                Math.min(max, percentile(copy, total, 0.99)), Math.min(max, percentile(copy, total, 0.999)));
+    }
+
+    // JMX attributes
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return snapshot().getMeanMillis();
+    }
+
+    @Override
+    public double getP50Millis() {
+        return snapshot().getP50Millis();
+    }
+
+    @Override
+    public double getP99Millis() {
+        return snapshot().getP99Millis();
+    }
+
+    @Override
+    public double getP999Millis() {
+        return snapshot().getP999Millis();
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    private static long percentile(long[] counts, long total, double p) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return midpoint(i);
+            }
+        }
+        return midpoint(counts.length - 1);
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // the middle of the range of values that fall into the bucket
+    private static long midpoint(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS)) + width / 2;
+    }
+}
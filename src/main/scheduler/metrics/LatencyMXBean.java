@@ -0,0 +1,16 @@
+package scheduler.metrics;
+
+// a LatencyHistogram as seen through JMX
+public interface LatencyMXBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+}
@@ -0,0 +1,58 @@
+package scheduler.metrics;
+
+// an immutable snapshot of a LatencyHistogram
+public class LatencySnapshot {
+    private final String name;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+
+    LatencySnapshot(String name, long count, long totalNanos, long maxNanos, long p50Nanos, long p99Nanos,
+                    long p999Nanos) {
+        this.name = name;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.p999Nanos = p999Nanos;
+    }
+
+    // Getters
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+
+    public double getP50Millis() {
+        return p50Nanos / 1e6;
+    }
+
+    public double getP99Millis() {
+        return p99Nanos / 1e6;
+    }
+
+    public double getP999Millis() {
+        return p999Nanos / 1e6;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+                count, getMeanMillis(), getP50Millis(), getP99Millis(), getP999Millis(), getMaxMillis());
+    }
+}
@@ -0,0 +1,102 @@
+package scheduler.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Process-wide latency histograms:
+//  - one per command dispatched by Scheduler.execute
+//  - one per SQL statement text, recording each round trip to the database
+//  - connection acquisition from the pool, password hashing, picking a caregiver for a reservation, and booking a
+//    batch of reservations in the ReservationPipeline
+// Every histogram is also registered as a JMX MBean under the "scheduler" domain.
+//
+// Looking up an existing histogram is a plain ConcurrentHashMap.get, so recording allocates nothing once a
+// histogram exists.
+public class Metrics {
+    private static final Metrics instance = new Metrics();
+
+    private final ConcurrentHashMap<String, LatencyHistogram> commands = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> statements = new ConcurrentHashMap<>();
+    private final LatencyHistogram connectionAcquisition = register("Pool", "acquire",
+            new LatencyHistogram("connection acquisition"));
+    private final LatencyHistogram hashing = register("Hasher", "hash", new LatencyHistogram("password hashing"));
+    private final LatencyHistogram assignment = register("Assignment", "choose",
+            new LatencyHistogram("caregiver assignment"));
+    private final LatencyHistogram reservationBatch = register("Pipeline", "batch",
+            new LatencyHistogram("reservation batch"));
+    private final LatencyHistogram journalSync = register("Journal", "sync", new LatencyHistogram("journal sync"));
+
+    private Metrics() {
+    }
+
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    public LatencyHistogram command(String name) {
+        LatencyHistogram histogram = commands.get(name);
+        return histogram != null ? histogram
+                : commands.computeIfAbsent(name, k -> register("Command", k, new LatencyHistogram(k)));
+    }
+
+    public LatencyHistogram statement(String sql) {
+        LatencyHistogram histogram = statements.get(sql);
+        return histogram != null ? histogram
+                : statements.computeIfAbsent(sql, k -> register("Statement", k, new LatencyHistogram(k)));
+    }
+
+    public LatencyHistogram connectionAcquisition() {
+        return connectionAcquisition;
+    }
+
+    public LatencyHistogram hashing() {
+        return hashing;
+    }
+
+    public LatencyHistogram assignment() {
+        return assignment;
+    }
+
+    public LatencyHistogram reservationBatch() {
+        return reservationBatch;
+    }
+
+    public LatencyHistogram journalSync() {
+        return journalSync;
+    }
+
+    // snapshots of the command histograms, busiest first
+    public List<LatencySnapshot> commandSnapshots() {
+        return snapshots(commands);
+    }
+
+    // snapshots of the statement histograms, busiest first
+    public List<LatencySnapshot> statementSnapshots() {
+        return snapshots(statements);
+    }
+
+    private static List<LatencySnapshot> snapshots(ConcurrentHashMap<String, LatencyHistogram> histograms) {
+        List<LatencySnapshot> snapshots = new ArrayList<>();
+        histograms.values().forEach(histogram -> snapshots.add(histogram.snapshot()));
+        snapshots.sort(Comparator.comparingLong(LatencySnapshot::getCount).reversed());
+        return snapshots;
+    }
+
+    private static LatencyHistogram register(String type, String name, LatencyHistogram histogram) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(histogram,
+                    new ObjectName("scheduler:type=" + type + ",name=" + ObjectName.quote(name)));
+        } catch (JMException e) {
+            // metrics are still recorded and shown by the stats command
+            System.out.println("Could not register " + type + " " + name + " with JMX");
+        }
+        return histogram;
+    }
+}
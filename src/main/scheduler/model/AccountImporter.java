@@ -0,0 +1,154 @@
+package scheduler.model;
+
+import scheduler.cache.UsernameFilter;
+import scheduler.repository.Account;
+import scheduler.repository.AccountRepository;
+import scheduler.repository.Storage;
+import scheduler.util.PasswordHasher;
+import scheduler.util.Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Creates patient or caregiver accounts in bulk from a CSV of username,password rows.
+//
+// The file is streamed in chunks of ImportChunkSize rows so memory stays flat however large it is. Each chunk is
+// validated with Util.passwordCheck, hashed in parallel on the PasswordHasher pool (hashing is what dominates),
+// and inserted all at once (one transaction with a JDBC batch on the database). A bad row is reported and skipped;
+// a chunk that fails to insert is reported row by row and the import carries on with the next chunk. Usernames that
+// already exist, including ones repeated within the file, are reported as taken.
+public class AccountImporter {
+    private static final int CHUNK_SIZE = Util.getConfigInt("ImportChunkSize", 1000);
+
+    public enum Role {
+        PATIENT,
+        CAREGIVER;
+
+        private AccountRepository repository() {
+            return this == PATIENT ? Storage.getInstance().patients() : Storage.getInstance().caregivers();
+        }
+
+        private UsernameFilter usernames() {
+            return this == PATIENT ? UsernameFilter.patients() : UsernameFilter.caregivers();
+        }
+    }
+
+    private final Role role;
+    private final PrintStream errors;
+    private int imported = 0;
+    private int failed = 0;
+
+    // failures are reported to errors as "Line <n>: <reason>"
+    public AccountImporter(Role role, PrintStream errors) {
+        this.role = role;
+        this.errors = errors;
+    }
+
+    public void importFrom(BufferedReader reader) throws IOException {
+        List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1 && line.trim().equalsIgnoreCase("username,password"))) {
+                continue;
+            }
+            Row row = parse(line, lineNumber);
+            if (row != null) {
+                chunk.add(row);
+            }
+            if (chunk.size() == CHUNK_SIZE) {
+                importChunk(chunk);
+                chunk.clear();
+            }
+        }
+        importChunk(chunk);
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    private Row parse(String line, int lineNumber) {
+        int comma = line.indexOf(',');
+        if (comma < 0) {
+            fail(lineNumber, "expected username,password");
+            return null;
+        }
+        String username = line.substring(0, comma).trim();
+        String password = line.substring(comma + 1).trim();
+        if (username.isEmpty() || username.length() > 255) {
+            fail(lineNumber, "invalid username");
+            return null;
+        }
+        String pCheckMessage = Util.passwordCheck(password);
+        if (!pCheckMessage.equals("STRONG")) {
+            fail(lineNumber, pCheckMessage);
+            return null;
+        }
+        return new Row(lineNumber, username, password);
+    }
+
+    private void importChunk(List<Row> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<byte[]>> hashes = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            row.salt = Util.generateSalt();
+            hashes.add(PasswordHasher.getInstance().hashAsync(row.password, row.salt));
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            chunk.get(i).hash = hashes.get(i).join();
+        }
+
+        List<Account> accounts = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            accounts.add(new Account(row.username, row.salt, row.hash));
+        }
+        try {
+            boolean[] inserted = role.repository().insertAllIfAbsent(accounts);
+            for (int i = 0; i < inserted.length; i++) {
+                if (!inserted[i]) {
+                    fail(chunk.get(i).lineNumber, "Username taken");
+                } else {
+                    role.usernames().add(accounts.get(i).getUsername());
+                    imported++;
+                }
+            }
+        } catch (SQLException e) {
+            for (Row row : chunk) {
+                fail(row.lineNumber, "could not be saved");
+            }
+            e.printStackTrace();
+        }
+    }
+
+    private void fail(int lineNumber, String reason) {
+        failed++;
+        errors.println("Line " + lineNumber + ": " + reason);
+    }
+
+    private static class Row {
+        private final int lineNumber;
+        private final String username;
+        private final String password;
+        private byte[] salt;
+        private byte[] hash;
+
+        Row(int lineNumber, String username, String password) {
+            this.lineNumber = lineNumber;
+            this.username = username;
+            this.password = password;
+        }
+    }
+}
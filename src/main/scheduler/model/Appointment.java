@@ -0,0 +1,221 @@
+package scheduler.model;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.CaregiverLoad;
+import scheduler.cache.DoseInventory;
+import scheduler.metrics.Metrics;
+import scheduler.repository.Reservation;
+import scheduler.repository.ReservationPipeline;
+import scheduler.repository.Storage;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+public class Appointment {
+    private final int id;
+    private final String caregiverName;
+    private final String patientName;
+    private final String vaccineName;
+    private final Date time;
+
+    private Appointment(AppointmentBuilder builder) {
+        this.id = builder.id;
+        this.caregiverName = builder.caregiverName;
+        this.patientName = builder.patientName;
+        this.vaccineName = builder.vaccineName;
+        this.time = builder.time;
+    }
+
+    private Appointment(AppointmentReserver reserver) {
+        this.id = reserver.id;
+        this.caregiverName = reserver.caregiverName;
+        this.patientName = reserver.patientName;
+        this.vaccineName = reserver.vaccineName;
+        this.time = reserver.time;
+    }
+
+    // Getters
+    public int getId() {
+        return id;
+    }
+
+    public String getCaregiverName() {
+        return caregiverName;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public String getVaccineName() {
+        return vaccineName;
+    }
+
+    public Date getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return "Appointment{" +
+                "id=" + id +
+                ", caregiverName='" + caregiverName + '\'' +
+                ", patientName='" + patientName + '\'' +
+                ", vaccineName='" + vaccineName + '\'' +
+                ", time=" + time +
+                '}';
+    }
+
+    public enum ReserveStatus {
+        RESERVED,
+        NO_CAREGIVER,
+        NO_DOSES
+    }
+
+    public static class AppointmentBuilder {
+        private final int id;
+        private final String caregiverName;
+        private final String patientName;
+        private final String vaccineName;
+        private final Date time;
+
+        public AppointmentBuilder(int id, String caregiverName, String patientName, String vaccineName, Date time) {
+            this.id = id;
+            this.caregiverName = caregiverName;
+            this.patientName = patientName;
+            this.vaccineName = vaccineName;
+            this.time = time;
+        }
+
+        public Appointment build() {
+            return new Appointment(this);
+        }
+    }
+
+    public static class AppointmentReserver {
+        private final String patientName;
+        private final String vaccineName;
+        private final Date time;
+        private int id;
+        private String caregiverName;
+        private ReserveStatus status;
+        private String assignedBy;
+
+        public AppointmentReserver(String patientName, String vaccineName, Date time) {
+            this.patientName = patientName;
+            this.vaccineName = vaccineName;
+            this.time = time;
+        }
+
+        // returns the new appointment, or null if no caregiver or no dose was available (see getStatus())
+        public Appointment reserve() throws SQLException {
+            AvailabilityIndex index = AvailabilityIndex.getInstance();
+            LocalDate date = this.time.toLocalDate();
+            // nobody is free that day: answer without a round trip
+            if (index.isLoaded() && !index.hasAvailability(date)) {
+                this.status = ReserveStatus.NO_CAREGIVER;
+                return null;
+            }
+            AssignmentStrategy strategy = AssignmentStrategy.getConfigured();
+            String candidate = null;
+            if (index.isLoaded()) {
+                long start = System.nanoTime();
+                candidate = strategy.choose(index.getCaregivers(date));
+                Metrics.getInstance().assignment().record(System.nanoTime() - start);
+            }
+
+            // take the dose in memory first; it goes back unless the appointment is booked
+            DoseInventory inventory = DoseInventory.getInstance();
+            boolean doseTaken = false;
+            if (inventory.isLoaded()) {
+                if (!inventory.tryTake(this.vaccineName, 1)) {
+                    this.status = ReserveStatus.NO_DOSES;
+                    return null;
+                }
+                doseTaken = true;
+            }
+
+            try {
+                // concurrent reservations for the same date and vaccine are booked together in one transaction
+                Reservation reservation = ReservationPipeline.getInstance()
+                        .reserve(this.patientName, this.vaccineName, this.time, candidate, !doseTaken);
+                this.status = reservation.getStatus();
+                if (this.status != ReserveStatus.RESERVED) {
+                    return null;
+                }
+                this.id = reservation.getId();
+                this.caregiverName = reservation.getCaregiverName();
+                if (candidate != null && !candidate.equals(this.caregiverName)) {
+                    strategy.recordTakenByOthers();
+                }
+                // without a candidate, or once it was taken, storage assigns the first caregiver still free
+                this.assignedBy = this.caregiverName.equals(candidate) ? strategy.toString() : "first free";
+                index.take(date, this.caregiverName);
+                CaregiverLoad.getInstance().increment(this.caregiverName);
+                doseTaken = false;
+                return new Appointment(this);
+            } finally {
+                if (doseTaken) {
+                    inventory.giveBack(this.vaccineName, 1);
+                }
+            }
+        }
+
+        public ReserveStatus getStatus() {
+            return status;
+        }
+
+        // the assignment strategy that picked the caregiver of the booked appointment
+        public String getAssignedBy() {
+            return assignedBy;
+        }
+    }
+
+    // Cancels appointments and hands back what they held: each caregiver gets the slot on the date back, and each
+    // dose goes back to the DoseInventory when it is loaded, or straight to the Vaccines table in the cancelling
+    // transaction when it is not. A dose returned to the inventory offsets the pending delta of the reservation
+    // that took it, so the Vaccines table and crash recovery stay consistent either way.
+    public static class AppointmentCanceller {
+        // the patient's appointment with the given id, or null if they have none
+        public Appointment cancelOfPatient(int id, String patientName) throws SQLException {
+            boolean inMemory = DoseInventory.getInstance().isLoaded();
+            Appointment appointment = Storage.getInstance().appointments().cancelOfPatient(id, patientName, !inMemory);
+            released(appointment, inMemory);
+            return appointment;
+        }
+
+        // the caregiver's appointment with the given id, or null if they have none
+        public Appointment cancelOfCaregiver(int id, String caregiverName) throws SQLException {
+            boolean inMemory = DoseInventory.getInstance().isLoaded();
+            Appointment appointment = Storage.getInstance().appointments()
+                    .cancelOfCaregiver(id, caregiverName, !inMemory);
+            released(appointment, inMemory);
+            return appointment;
+        }
+
+        // every appointment the caregiver has on the date
+        public List<Appointment> cancelDay(String caregiverName, Date date) throws SQLException {
+            boolean inMemory = DoseInventory.getInstance().isLoaded();
+            List<Appointment> appointments = Storage.getInstance().appointments()
+                    .cancelDay(caregiverName, date, !inMemory);
+            for (Appointment appointment : appointments) {
+                released(appointment, inMemory);
+            }
+            return appointments;
+        }
+
+        // bring the in-memory copies in line with what the cancel changed in storage
+        private static void released(Appointment appointment, boolean dosesInMemory) {
+            if (appointment == null) {
+                return;
+            }
+            AvailabilityIndex.getInstance().add(appointment.getTime().toLocalDate(), appointment.getCaregiverName(), 1);
+            CaregiverLoad.getInstance().decrement(appointment.getCaregiverName());
+            if (dosesInMemory) {
+                DoseInventory.getInstance().giveBack(appointment.getVaccineName(), 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package scheduler.model;
+
+import scheduler.cache.CaregiverLoad;
+import scheduler.util.Util;
+
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// How reserve picks a caregiver among those available on the date, selected by the AssignmentStrategy setting.
+// The pick is only a candidate: if another reservation claims it first, the repository falls back to the first
+// caregiver still free in username order.
+//
+// Always taking the first caregiver in username order sends every concurrent reservation for a date after the same
+// Availabilities row, and gives the same few caregivers all the work. The other strategies spread them out:
+//  least-loaded - the caregiver with the fewest appointments so far (see CaregiverLoad), ties broken at random
+//  round-robin  - the caregiver after the one assigned last, in username order
+//  random       - any available caregiver
+// The position of the one assigned last is shared by every date, so the work spreads over all caregivers rather
+// than every date starting over at the first. least-loaded and random only look at the AssignmentWindow caregivers
+// after that position, so a pick costs the same however many caregivers are free; a window of 0 looks at all.
+public enum AssignmentStrategy {
+    FIRST("first") {
+        @Override
+        String pick(NavigableSet<String> available) {
+            return firstOrNull(available);
+        }
+    },
+    LEAST_LOADED("least-loaded") {
+        @Override
+        String pick(NavigableSet<String> available) {
+            return pickFromWindow(available, true);
+        }
+    },
+    ROUND_ROBIN("round-robin") {
+        @Override
+        String pick(NavigableSet<String> available) {
+            // advancing the cursor atomically hands concurrent reservers distinct caregivers
+            String[] chosen = new String[1];
+            cursor.updateAndGet(last -> {
+                String next = last == null ? null : available.higher(last);
+                chosen[0] = next != null ? next : firstOrNull(available);
+                return chosen[0] != null ? chosen[0] : last;
+            });
+            return chosen[0];
+        }
+    },
+    RANDOM("random") {
+        @Override
+        String pick(NavigableSet<String> available) {
+            return pickFromWindow(available, false);
+        }
+    };
+
+    private static final AssignmentStrategy configured = fromName(Util.getConfig("AssignmentStrategy",
+            "least-loaded"));
+    private static final int WINDOW = Util.getConfigInt("AssignmentWindow", 64);
+
+    private final String name;
+    // the caregiver this strategy assigned last, on any date
+    final AtomicReference<String> cursor = new AtomicReference<>();
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder takenByOthers = new LongAdder();
+
+    AssignmentStrategy(String name) {
+        this.name = name;
+    }
+
+    public static AssignmentStrategy getConfigured() {
+        return configured;
+    }
+
+    public static AssignmentStrategy fromName(String name) {
+        for (AssignmentStrategy strategy : values()) {
+            if (strategy.name.equals(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown AssignmentStrategy: " + name +
+                " (expected first, least-loaded, round-robin or random)");
+    }
+
+    // the caregiver to try first among those available on a date, or null if there are none
+    public String choose(NavigableSet<String> available) {
+        String candidate = pick(available);
+        if (candidate != null) {
+            candidates.increment();
+        }
+        return candidate;
+    }
+
+    // note that a candidate this strategy chose was claimed by another reservation before this one got to it
+    public void recordTakenByOthers() {
+        takenByOthers.increment();
+    }
+
+    abstract String pick(NavigableSet<String> available);
+
+    // Walk at most WINDOW of the caregivers available, starting after the one assigned last and wrapping around to
+    // the start of the set, and keep either the least loaded (leastLoaded) or a uniformly random one. Reservoir
+    // sampling keeps the pick uniform among equally good caregivers without collecting them first.
+    String pickFromWindow(NavigableSet<String> available, boolean leastLoaded) {
+        CaregiverLoad load = CaregiverLoad.getInstance();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String last = cursor.get();
+        int limit = WINDOW > 0 ? WINDOW : Integer.MAX_VALUE;
+        String chosen = null;
+        int best = Integer.MAX_VALUE;
+        int ties = 0;
+        int seen = 0;
+        List<NavigableSet<String>> parts = last == null ? List.of(available)
+                : List.of(available.tailSet(last, false), available.headSet(last, true));
+        window:
+        for (NavigableSet<String> part : parts) {
+            for (String caregiver : part) {
+                if (seen++ == limit) {
+                    break window;
+                }
+                int score = leastLoaded ? load.get(caregiver) : 0;
+                if (score < best) {
+                    best = score;
+                    chosen = caregiver;
+                    ties = 1;
+                } else if (score == best && random.nextInt(++ties) == 0) {
+                    chosen = caregiver;
+                }
+            }
+        }
+        if (chosen != null) {
+            cursor.set(chosen);
+        }
+        return chosen;
+    }
+
+    static String firstOrNull(NavigableSet<String> caregivers) {
+        try {
+            return caregivers.first();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    // Getters
+    public long getCandidates() {
+        return candidates.sum();
+    }
+
+    public long getTakenByOthers() {
+        return takenByOthers.sum();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,10 +1,16 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.UsernameFilter;
+import scheduler.repository.Account;
+import scheduler.repository.Storage;
+import scheduler.util.PasswordHasher;
 import scheduler.util.Util;
 
-import java.sql.*;
-import java.util.Arrays;
+import java.security.MessageDigest;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
 
 public class Caregiver {
     private final String username;
@@ -37,38 +43,24 @@ public class Caregiver {
     }
 
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addCaregiver = "INSERT INTO Caregivers VALUES (? , ?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addCaregiver);
-            statement.setString(1, this.username);
-            statement.setBytes(2, this.salt);
-            statement.setBytes(3, this.hash);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        Storage.getInstance().caregivers().insert(new Account(this.username, this.salt, this.hash));
+        UsernameFilter.caregivers().add(this.username);
+    }
+
+    // Take the number of appointments on the date, on top of any slots still free
+    public void uploadAvailability(Date d, int slots) throws SQLException {
+        Storage.getInstance().availabilities().add(d, this.username, slots);
+        AvailabilityIndex.getInstance().add(d.toLocalDate(), this.username, slots);
     }
 
-    public void uploadAvailability(Date d) throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addAvailability = "INSERT INTO Availabilities VALUES (? , ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addAvailability);
-            statement.setDate(1, d);
-            statement.setString(2, this.username);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+    // Upload many dates at once, all or nothing, each with the number of slots.
+    // Dates the caregiver still has free slots on are skipped; returns how many were added.
+    public int uploadAvailability(List<Date> dates, int slots) throws SQLException {
+        List<Date> inserted = Storage.getInstance().availabilities().addAllIfAbsent(this.username, dates, slots);
+        for (Date d : inserted) {
+            AvailabilityIndex.getInstance().add(d.toLocalDate(), this.username, slots);
         }
+        return inserted.size();
     }
 
     public static class CaregiverBuilder {
@@ -99,35 +91,19 @@ public class Caregiver {
         }
 
         public Caregiver get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String getCaregiver = "SELECT Salt, Hash FROM Caregivers WHERE Username = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getCaregiver);
-                statement.setString(1, this.username);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    byte[] salt = resultSet.getBytes("Salt");
-                    // we need to call Util.trim() to get rid of the paddings,
-                    // try to remove the use of Util.trim() and you'll see :)
-                    byte[] hash = Util.trim(resultSet.getBytes("Hash"));
-                    // check if the password matches
-                    byte[] calculatedHash = Util.generateHash(password, salt);
-                    if (!Arrays.equals(hash, calculatedHash)) {
-                        return null;
-                    } else {
-                        this.salt = salt;
-                        this.hash = hash;
-                        return new Caregiver(this);
-                    }
-                }
+            Account account = Storage.getInstance().caregivers().find(this.username);
+            if (account == null) {
                 return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
             }
+            // check if the password matches
+            byte[] calculatedHash = PasswordHasher.getInstance().hash(password, account.getSalt());
+            // the database pads the stored hash with zero bytes, so a hash ending in zeros only matches trimmed
+            if (!MessageDigest.isEqual(Util.trim(account.getHash()), Util.trim(calculatedHash))) {
+                return null;
+            }
+            this.salt = account.getSalt();
+            this.hash = account.getHash();
+            return new Caregiver(this);
         }
     }
 }
@@ -1,10 +1,13 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
+import scheduler.cache.UsernameFilter;
+import scheduler.repository.Account;
+import scheduler.repository.Storage;
+import scheduler.util.PasswordHasher;
 import scheduler.util.Util;
 
-import java.sql.*;
-import java.util.Arrays;
+import java.security.MessageDigest;
+import java.sql.SQLException;
 
 public class Patient {
 
@@ -38,21 +41,8 @@ public class Patient {
     }
 
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addPatient = "INSERT INTO Patients VALUES (? , ?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addPatient);
-            statement.setString(1, this.username);
-            statement.setBytes(2, this.salt);
-            statement.setBytes(3, this.hash);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        Storage.getInstance().patients().insert(new Account(this.username, this.salt, this.hash));
+        UsernameFilter.patients().add(this.username);
     }
 
     public static class PatientBuilder {
@@ -83,35 +73,19 @@ public class Patient {
         }
 
         public Patient get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String getPatient = "SELECT Salt, Hash FROM Patients WHERE Username = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getPatient);
-                statement.setString(1, this.username);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    byte[] salt = resultSet.getBytes("Salt");
-                    // we need to call Util.trim() to get rid of the paddings,
-                    // try to remove the use of Util.trim() and you'll see :)
-                    byte[] hash = Util.trim(resultSet.getBytes("Hash"));
-                    // check if the password matches
-                    byte[] calculatedHash = Util.generateHash(password, salt);
-                    if (!Arrays.equals(hash, calculatedHash)) {
-                        return null;
-                    } else {
-                        this.salt = salt;
-                        this.hash = hash;
-                        return new Patient(this);
-                    }
-                }
+            Account account = Storage.getInstance().patients().find(this.username);
+            if (account == null) {
+                return null;
+            }
+            // check if the password matches
+            byte[] calculatedHash = PasswordHasher.getInstance().hash(password, account.getSalt());
+            // the database pads the stored hash with zero bytes, so a hash ending in zeros only matches trimmed
+            if (!MessageDigest.isEqual(Util.trim(account.getHash()), Util.trim(calculatedHash))) {
                 return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
             }
+            this.salt = account.getSalt();
+            this.hash = account.getHash();
+            return new Patient(this);
         }
     }
     
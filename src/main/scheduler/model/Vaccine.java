@@ -1,10 +1,8 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
+import scheduler.cache.DoseInventory;
+import scheduler.repository.Storage;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public class Vaccine {
@@ -31,20 +29,8 @@ public class Vaccine {
     }
 
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addDoses = "INSERT INTO vaccines VALUES (?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addDoses);
-            statement.setString(1, this.vaccineName);
-            statement.setInt(2, this.availableDoses);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        Storage.getInstance().vaccines().insert(this.vaccineName, this.availableDoses);
+        DoseInventory.getInstance().added(this.vaccineName, this.availableDoses);
     }
 
     // Increment the available doses
@@ -52,44 +38,23 @@ public class Vaccine {
         if (num <= 0) {
             throw new IllegalArgumentException("Argument cannot be negative!");
         }
-        this.availableDoses += num;
 
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String removeAvailability  = "UPDATE vaccines SET Doses = ? WHERE name = ?;";
-        try {
-            PreparedStatement statement = con.prepareStatement(removeAvailability);
-            statement.setInt(1, this.availableDoses);
-            statement.setString(2, this.vaccineName);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        // added relative to the stored count so concurrent add_doses calls cannot overwrite each other
+        Storage.getInstance().vaccines().addDoses(this.vaccineName, num);
+        this.availableDoses += num;
+        DoseInventory.getInstance().added(this.vaccineName, num);
     }
 
     // Decrement the available doses
+    // Doses are taken from the shared DoseInventory, which writes them back to the database in batches
     public void decreaseAvailableDoses(int num) throws SQLException {
-        if (this.availableDoses - num < 0) {
+        if (num <= 0) {
+            throw new IllegalArgumentException("Argument cannot be negative!");
+        }
+        if (!DoseInventory.getInstance().tryTake(this.vaccineName, num)) {
             throw new IllegalArgumentException("Not enough available doses!");
         }
         this.availableDoses -= num;
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String removeAvailability  = "UPDATE vaccines SET Doses = ? WHERE name = ?;";
-        try {
-            PreparedStatement statement = con.prepareStatement(removeAvailability);
-            statement.setInt(1, this.availableDoses);
-            statement.setString(2, this.vaccineName);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
     }
 
     @Override
@@ -123,24 +88,12 @@ public class Vaccine {
         }
 
         public Vaccine get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String getVaccine = "SELECT Name, Doses FROM Vaccines WHERE Name = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getVaccine);
-                statement.setString(1, this.vaccineName);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    this.availableDoses = resultSet.getInt("Doses");
-                    return new Vaccine(this);
-                }
+            int doses = Storage.getInstance().vaccines().findDoses(this.vaccineName);
+            if (doses < 0) {
                 return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
             }
+            this.availableDoses = doses;
+            return new Vaccine(this);
         }
     }
 }
@@ -0,0 +1,27 @@
+package scheduler.repository;
+
+// a stored patient or caregiver login: the username with its salt and salted password hash
+public class Account {
+    private final String username;
+    private final byte[] salt;
+    private final byte[] hash;
+
+    public Account(String username, byte[] salt, byte[] hash) {
+        this.username = username;
+        this.salt = salt;
+        this.hash = hash;
+    }
+
+    // Getters
+    public String getUsername() {
+        return username;
+    }
+
+    public byte[] getSalt() {
+        return salt;
+    }
+
+    public byte[] getHash() {
+        return hash;
+    }
+}
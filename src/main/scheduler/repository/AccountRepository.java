@@ -0,0 +1,22 @@
+package scheduler.repository;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Patients and caregivers are stored the same way, each in their own repository
+public interface AccountRepository {
+    boolean exists(String username) throws SQLException;
+
+    // null if there is no such account
+    Account find(String username) throws SQLException;
+
+    // every stored username, in no particular order
+    void forEachUsername(Consumer<String> action) throws SQLException;
+
+    void insert(Account account) throws SQLException;
+
+    // Insert every account whose username is still free, all or nothing.
+    // result[i] is false when accounts[i] was skipped because the username was already taken.
+    boolean[] insertAllIfAbsent(List<Account> accounts) throws SQLException;
+}
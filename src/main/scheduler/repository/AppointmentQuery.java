@@ -0,0 +1,75 @@
+package scheduler.repository;
+
+import java.sql.Date;
+
+// One page of a caregiver's or patient's appointments, in id order: those with an id above afterId and a time
+// between fromDate and toDate (both inclusive, either may be null), at most limit of them (0 for no limit).
+// The next page starts after the id of the last appointment on this one.
+public class AppointmentQuery {
+    private final Date fromDate;
+    private final Date toDate;
+    private final int afterId;
+    private final int limit;
+
+    private AppointmentQuery(AppointmentQueryBuilder builder) {
+        this.fromDate = builder.fromDate;
+        this.toDate = builder.toDate;
+        this.afterId = builder.afterId;
+        this.limit = builder.limit;
+    }
+
+    // Getters
+    public Date getFromDate() {
+        return fromDate;
+    }
+
+    public Date getToDate() {
+        return toDate;
+    }
+
+    public int getAfterId() {
+        return afterId;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean matches(Date time) {
+        return (fromDate == null || !time.before(fromDate)) && (toDate == null || !time.after(toDate));
+    }
+
+    public static class AppointmentQueryBuilder {
+        private Date fromDate;
+        private Date toDate;
+        private int afterId = 0;
+        private int limit = 0;
+
+        public AppointmentQueryBuilder fromDate(Date fromDate) {
+            this.fromDate = fromDate;
+            return this;
+        }
+
+        public AppointmentQueryBuilder toDate(Date toDate) {
+            this.toDate = toDate;
+            return this;
+        }
+
+        public AppointmentQueryBuilder afterId(int afterId) {
+            this.afterId = afterId;
+            return this;
+        }
+
+        public AppointmentQueryBuilder limit(int limit) {
+            if (limit < 0) {
+                throw new IllegalArgumentException("limit must not be negative");
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        public AppointmentQuery build() {
+            return new AppointmentQuery(this);
+        }
+    }
+}
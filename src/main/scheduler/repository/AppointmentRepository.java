@@ -0,0 +1,47 @@
+package scheduler.repository;
+
+import scheduler.model.Appointment;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public interface AppointmentRepository {
+    // Atomically claim a caregiver available on the date (candidate first, if it is still free), take a dose of
+    // the vaccine unless takeDose is false, and insert the appointment
+    Reservation reserve(String patientName, String vaccineName, Date date, String candidate, boolean takeDose)
+            throws SQLException;
+
+    // The same as reserve for each patient in turn, all on one date and for one vaccine, as a single transaction in
+    // which claims, dose updates and inserts are each sent as a batch. candidates has one entry (or null) per
+    // patient; the result has one Reservation per patient, in the same order.
+    List<Reservation> reserveAll(List<String> patientNames, String vaccineName, Date date, List<String> candidates,
+                                 boolean takeDoses) throws SQLException;
+
+    // Cancel the patient's appointment with the given id, all in one transaction: delete it, make its caregiver
+    // available on its date again and, unless giveBackDoses is false, return its dose to the Vaccines table.
+    // Returns the cancelled appointment, or null if the patient has none with that id.
+    Appointment cancelOfPatient(int id, String patientName, boolean giveBackDoses) throws SQLException;
+
+    // the same for one of the caregiver's appointments
+    Appointment cancelOfCaregiver(int id, String caregiverName, boolean giveBackDoses) throws SQLException;
+
+    // the same for every appointment the caregiver has on the date; returns the cancelled appointments
+    List<Appointment> cancelDay(String caregiverName, Date date, boolean giveBackDoses) throws SQLException;
+
+    // the highest appointment id handed out so far, 0 if there are none
+    int lastId() throws SQLException;
+
+    // every caregiver with at least one appointment, and how many they have
+    void countByCaregiver(BiConsumer<String, Integer> action) throws SQLException;
+
+    // the caregiver's appointments that match the query, in id order, streamed to action as they are read
+    void forEachOfCaregiver(String caregiverName, AppointmentQuery query, Consumer<Appointment> action)
+            throws SQLException;
+
+    // the patient's appointments that match the query, in id order, streamed to action as they are read
+    void forEachOfPatient(String patientName, AppointmentQuery query, Consumer<Appointment> action)
+            throws SQLException;
+}
@@ -0,0 +1,33 @@
+package scheduler.repository;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// A caregiver is available on a date while they have free slots on it, each slot one more appointment they can
+// take. Reservations take a slot and cancellations give it back.
+public interface AvailabilityRepository {
+    interface SlotConsumer {
+        void accept(Date date, String caregiver, int slots);
+    }
+
+    // Give the caregiver the number of slots on the date, on top of any they have left
+    void add(Date date, String caregiver, int slots) throws SQLException;
+
+    // Give the caregiver the number of slots on every date they have none left on, all or nothing.
+    // Returns the dates that were added.
+    List<Date> addAllIfAbsent(String caregiver, List<Date> dates, int slots) throws SQLException;
+
+    // caregivers with a free slot on the date, in username order
+    List<String> findCaregivers(Date date) throws SQLException;
+
+    // every date from start to end on which any caregiver has a free slot, with how many do, in date order
+    void countByDate(Date start, Date end, BiConsumer<Date, Integer> action) throws SQLException;
+
+    // every caregiver with a free slot on a date from start to end, in date and then username order
+    void forEachInRange(Date start, Date end, BiConsumer<Date, String> action) throws SQLException;
+
+    // every (date, caregiver) pair with free slots, and how many, in no particular order
+    void forEach(SlotConsumer action) throws SQLException;
+}
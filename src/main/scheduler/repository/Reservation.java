@@ -0,0 +1,37 @@
+package scheduler.repository;
+
+import scheduler.model.Appointment;
+
+// the outcome of AppointmentRepository.reserve: the new appointment's id and caregiver when it was booked
+public class Reservation {
+    private final Appointment.ReserveStatus status;
+    private final int id;
+    private final String caregiverName;
+
+    private Reservation(Appointment.ReserveStatus status, int id, String caregiverName) {
+        this.status = status;
+        this.id = id;
+        this.caregiverName = caregiverName;
+    }
+
+    public static Reservation booked(int id, String caregiverName) {
+        return new Reservation(Appointment.ReserveStatus.RESERVED, id, caregiverName);
+    }
+
+    public static Reservation failed(Appointment.ReserveStatus status) {
+        return new Reservation(status, 0, null);
+    }
+
+    // Getters
+    public Appointment.ReserveStatus getStatus() {
+        return status;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getCaregiverName() {
+        return caregiverName;
+    }
+}
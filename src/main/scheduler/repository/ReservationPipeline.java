@@ -0,0 +1,182 @@
+package scheduler.repository;
+
+import scheduler.metrics.Metrics;
+import scheduler.util.Util;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Group commit for reservations on the jdbc backend.
+//
+// Each reservation is queued in a lane for its date and vaccine instead of running its own transaction. A lane is
+// drained by one worker at a time, which takes up to ReservationBatchSize queued reservations and books them with a
+// single AppointmentRepository.reserveAll: one transaction and one round trip per step for the whole batch. Every
+// caller then gets its own Reservation back. While a batch is committing the next one fills up, so batches grow with
+// the load on their own; ReservationMaxWaitMicros can also hold a short batch back to wait for more. A batch of one,
+// the usual case at low load, goes through the single-statement AppointmentRepository.reserve instead.
+//
+// Lanes are drained on virtual threads, so a slow lane never holds up another and the connection pool is what limits
+// how many batches reach the database at once. A lane is dropped when its queue runs empty.
+//
+// ReservationBatchSize 1 turns the pipeline off. The memory backend never uses it, since its reservations are
+// already a single atomic step each.
+public class ReservationPipeline {
+    private static final ReservationPipeline instance = new ReservationPipeline(
+            Util.getConfigInt("ReservationBatchSize", 64),
+            Util.getConfigLong("ReservationMaxWaitMicros", 0));
+
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final ExecutorService workers;
+    private final ConcurrentHashMap<Lane.Key, Lane> lanes = new ConcurrentHashMap<>();
+
+    // counters reported by the stats command
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+
+    private ReservationPipeline(int batchSize, long maxWaitMicros) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("ReservationBatchSize must be positive");
+        }
+        this.batchSize = batchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.workers = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("reservation-pipeline-", 1).factory());
+    }
+
+    public static ReservationPipeline getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return batchSize > 1 && Storage.getInstance().getKind().equals("jdbc");
+    }
+
+    // AppointmentRepository.reserve, through a batch when the pipeline is enabled; waits for the outcome
+    public Reservation reserve(String patientName, String vaccineName, Date date, String candidate, boolean takeDose)
+            throws SQLException {
+        if (!isEnabled()) {
+            return Storage.getInstance().appointments().reserve(patientName, vaccineName, date, candidate, takeDose);
+        }
+        Request request = new Request(patientName, candidate);
+        Lane lane = lanes.computeIfAbsent(new Lane.Key(date, vaccineName, takeDose), Lane::new);
+        lane.queue.add(request);
+        if (lane.scheduled.compareAndSet(false, true)) {
+            workers.execute(() -> drain(lane));
+        }
+        try {
+            return request.result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof SQLException ? (SQLException) e.getCause() : new SQLException(e.getCause());
+        }
+    }
+
+    // Book the lane's queued reservations a batch at a time until the queue is empty
+    private void drain(Lane lane) {
+        while (true) {
+            if (maxWaitNanos > 0 && lane.queue.size() < batchSize) {
+                LockSupport.parkNanos(maxWaitNanos);
+            }
+            List<Request> batch = new ArrayList<>(batchSize);
+            Request request;
+            while (batch.size() < batchSize && (request = lane.queue.poll()) != null) {
+                batch.add(request);
+            }
+            if (batch.isEmpty()) {
+                lane.scheduled.set(false);
+                if (lane.queue.isEmpty()) {
+                    // a reservation that still finds the dropped lane schedules a drain of it itself
+                    lanes.remove(lane.key, lane);
+                    return;
+                }
+                // a reservation queued after the last poll but before the flag cleared would otherwise wait forever
+                if (!lane.scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            book(lane.key, batch);
+        }
+    }
+
+    private void book(Lane.Key key, List<Request> batch) {
+        List<String> patientNames = new ArrayList<>(batch.size());
+        List<String> candidates = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            patientNames.add(request.patientName);
+            candidates.add(request.candidate);
+        }
+        long start = System.nanoTime();
+        try {
+            AppointmentRepository appointments = Storage.getInstance().appointments();
+            List<Reservation> reservations = batch.size() == 1
+                    ? List.of(appointments.reserve(patientNames.get(0), key.vaccineName(), key.date(),
+                            candidates.get(0), key.takeDose()))
+                    : appointments.reserveAll(patientNames, key.vaccineName(), key.date(), candidates,
+                            key.takeDose());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(reservations.get(i));
+            }
+        } catch (SQLException | RuntimeException e) {
+            // the whole batch rolled back: every reservation in it failed
+            for (Request request : batch) {
+                request.result.completeExceptionally(e);
+            }
+        } finally {
+            Metrics.getInstance().reservationBatch().record(System.nanoTime() - start);
+            batches.increment();
+            requests.add(batch.size());
+        }
+    }
+
+    // Getters
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) requests.sum() / count;
+    }
+
+    private static class Request {
+        private final String patientName;
+        private final String candidate;
+        private final CompletableFuture<Reservation> result = new CompletableFuture<>();
+
+        Request(String patientName, String candidate) {
+            this.patientName = patientName;
+            this.candidate = candidate;
+        }
+    }
+
+    // the queued reservations for one date and vaccine; scheduled is true while a worker is draining it
+    private static class Lane {
+        private record Key(Date date, String vaccineName, boolean takeDose) {
+        }
+
+        private final Key key;
+        private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Lane(Key key) {
+            this.key = key;
+        }
+    }
+}
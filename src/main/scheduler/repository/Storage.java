@@ -0,0 +1,118 @@
+package scheduler.repository;
+
+import scheduler.cache.QueryCache;
+import scheduler.db.ConnectionManager;
+import scheduler.repository.cached.CachedAppointmentRepository;
+import scheduler.repository.cached.CachedAvailabilityRepository;
+import scheduler.repository.cached.CachedVaccineRepository;
+import scheduler.repository.jdbc.JdbcAccountRepository;
+import scheduler.repository.jdbc.JdbcAppointmentRepository;
+import scheduler.repository.jdbc.JdbcAvailabilityRepository;
+import scheduler.repository.jdbc.JdbcVaccineRepository;
+import scheduler.repository.journal.CommandJournal;
+import scheduler.repository.journal.JournalEntry;
+import scheduler.repository.journal.JournaledAccountRepository;
+import scheduler.repository.journal.JournaledAppointmentRepository;
+import scheduler.repository.journal.JournaledAvailabilityRepository;
+import scheduler.repository.journal.JournaledVaccineRepository;
+import scheduler.repository.memory.InMemoryAccountRepository;
+import scheduler.repository.memory.InMemoryAppointmentRepository;
+import scheduler.repository.memory.InMemoryAvailabilityRepository;
+import scheduler.repository.memory.InMemoryStore;
+import scheduler.repository.memory.InMemoryVaccineRepository;
+import scheduler.util.Util;
+
+// The repositories every command and model class stores its data through, selected by the Storage setting:
+//  jdbc   - the database behind ConnectionManager (the default)
+//  memory - an in-process store with no database at all; nothing survives a restart, which suits local runs,
+//           tests, benchmarks and load generation
+// With JournalPath set, jdbc writes go through the CommandJournal first, and unless QueryCacheSize is 0 repeated
+// jdbc reads are answered from a QueryCache.
+public class Storage {
+    private static final Storage instance = create(Util.getConfig("Storage", "jdbc"));
+
+    private final String kind;
+    private final AccountRepository patients;
+    private final AccountRepository caregivers;
+    private final AvailabilityRepository availabilities;
+    private final VaccineRepository vaccines;
+    private final AppointmentRepository appointments;
+
+    private Storage(String kind, AccountRepository patients, AccountRepository caregivers,
+                    AvailabilityRepository availabilities, VaccineRepository vaccines,
+                    AppointmentRepository appointments) {
+        this.kind = kind;
+        this.patients = patients;
+        this.caregivers = caregivers;
+        this.availabilities = availabilities;
+        this.vaccines = vaccines;
+        this.appointments = appointments;
+    }
+
+    public static Storage getInstance() {
+        return instance;
+    }
+
+    private static Storage create(String kind) {
+        if (kind.equals("jdbc")) {
+            AccountRepository patients = new JdbcAccountRepository("Patients");
+            AccountRepository caregivers = new JdbcAccountRepository("Caregivers");
+            AvailabilityRepository availabilities = new JdbcAvailabilityRepository();
+            VaccineRepository vaccines = new JdbcVaccineRepository();
+            AppointmentRepository appointments = new JdbcAppointmentRepository();
+            if (CommandJournal.getInstance().isEnabled()) {
+                patients = new JournaledAccountRepository(patients, JournalEntry.Type.PATIENT);
+                caregivers = new JournaledAccountRepository(caregivers, JournalEntry.Type.CAREGIVER);
+                availabilities = new JournaledAvailabilityRepository(availabilities);
+                vaccines = new JournaledVaccineRepository(vaccines);
+                appointments = new JournaledAppointmentRepository(appointments);
+            }
+            if (QueryCache.isEnabled()) {
+                CachedAvailabilityRepository cachedAvailabilities = new CachedAvailabilityRepository(availabilities);
+                CachedVaccineRepository cachedVaccines = new CachedVaccineRepository(vaccines);
+                availabilities = cachedAvailabilities;
+                vaccines = cachedVaccines;
+                appointments = new CachedAppointmentRepository(appointments, cachedAvailabilities, cachedVaccines);
+            }
+            return new Storage(kind, patients, caregivers, availabilities, vaccines, appointments);
+        } else if (kind.equals("memory")) {
+            InMemoryStore store = new InMemoryStore();
+            return new Storage(kind, InMemoryAccountRepository.patients(store),
+                    InMemoryAccountRepository.caregivers(store), new InMemoryAvailabilityRepository(store),
+                    new InMemoryVaccineRepository(store), new InMemoryAppointmentRepository(store));
+        }
+        throw new IllegalArgumentException("Unknown Storage: " + kind + " (expected jdbc or memory)");
+    }
+
+    // Getters
+    public String getKind() {
+        return kind;
+    }
+
+    public AccountRepository patients() {
+        return patients;
+    }
+
+    public AccountRepository caregivers() {
+        return caregivers;
+    }
+
+    public AvailabilityRepository availabilities() {
+        return availabilities;
+    }
+
+    public VaccineRepository vaccines() {
+        return vaccines;
+    }
+
+    public AppointmentRepository appointments() {
+        return appointments;
+    }
+
+    // release whatever the backend holds open
+    public void close() {
+        if (kind.equals("jdbc")) {
+            ConnectionManager.shutdown();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package scheduler.repository;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+public interface VaccineRepository {
+    // -1 if there is no such vaccine
+    int findDoses(String name) throws SQLException;
+
+    void insert(String name, int doses) throws SQLException;
+
+    // relative to the stored count, so concurrent calls never overwrite each other
+    void addDoses(String name, int num) throws SQLException;
+
+    // vaccine name -> doses, in name order
+    Map<String, Integer> findAll() throws SQLException;
+
+    // Used by the DoseInventory: take off the doses of appointments booked since the last checkpoint that were
+    // never applied, advance the checkpoint, and return every vaccine's dose count
+    Map<String, Integer> recoverDoses() throws SQLException;
+
+    // Used by the DoseInventory: add each vaccine's delta and record that every appointment up to checkpoint is
+    // now reflected in the stored counts, in one transaction
+    void applyDoseDeltas(Map<String, Integer> deltas, int checkpoint) throws SQLException;
+}
@@ -0,0 +1,155 @@
+package scheduler.repository.cached;
+
+import scheduler.cache.QueryCache;
+import scheduler.model.Appointment;
+import scheduler.repository.AppointmentQuery;
+import scheduler.repository.AppointmentRepository;
+import scheduler.repository.Reservation;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// Appointments with the pages show_appointments reads cached per caregiver or patient. Booking or cancelling an
+// appointment invalidates the pages of both people on it, the caregivers free on its date and, when a dose moved,
+// its vaccine.
+public class CachedAppointmentRepository implements AppointmentRepository {
+    // longer results are streamed through without being kept
+    private static final int MAX_CACHED_ROWS = 500;
+
+    private record Page(String owner, Date fromDate, Date toDate, int afterId, int limit) {
+    }
+
+    private final AppointmentRepository delegate;
+    private final CachedAvailabilityRepository availabilities;
+    private final CachedVaccineRepository vaccines;
+    private final QueryCache<Page, List<Appointment>> pages = new QueryCache<>("appointment pages");
+
+    public CachedAppointmentRepository(AppointmentRepository delegate, CachedAvailabilityRepository availabilities,
+                                       CachedVaccineRepository vaccines) {
+        this.delegate = delegate;
+        this.availabilities = availabilities;
+        this.vaccines = vaccines;
+    }
+
+    @Override
+    public Reservation reserve(String patientName, String vaccineName, Date date, String candidate, boolean takeDose)
+            throws SQLException {
+        Reservation reservation = delegate.reserve(patientName, vaccineName, date, candidate, takeDose);
+        if (reservation.getStatus() == Appointment.ReserveStatus.RESERVED) {
+            invalidate(patientName, reservation.getCaregiverName(), date, vaccineName, takeDose);
+        }
+        return reservation;
+    }
+
+    @Override
+    public List<Reservation> reserveAll(List<String> patientNames, String vaccineName, Date date,
+                                        List<String> candidates, boolean takeDoses) throws SQLException {
+        List<Reservation> reservations = delegate.reserveAll(patientNames, vaccineName, date, candidates, takeDoses);
+        for (int i = 0; i < reservations.size(); i++) {
+            Reservation reservation = reservations.get(i);
+            if (reservation.getStatus() == Appointment.ReserveStatus.RESERVED) {
+                invalidate(patientNames.get(i), reservation.getCaregiverName(), date, vaccineName, takeDoses);
+            }
+        }
+        return reservations;
+    }
+
+    @Override
+    public Appointment cancelOfPatient(int id, String patientName, boolean giveBackDoses) throws SQLException {
+        return invalidate(delegate.cancelOfPatient(id, patientName, giveBackDoses), giveBackDoses);
+    }
+
+    @Override
+    public Appointment cancelOfCaregiver(int id, String caregiverName, boolean giveBackDoses) throws SQLException {
+        return invalidate(delegate.cancelOfCaregiver(id, caregiverName, giveBackDoses), giveBackDoses);
+    }
+
+    @Override
+    public List<Appointment> cancelDay(String caregiverName, Date date, boolean giveBackDoses) throws SQLException {
+        List<Appointment> cancelled = delegate.cancelDay(caregiverName, date, giveBackDoses);
+        for (Appointment appointment : cancelled) {
+            invalidate(appointment, giveBackDoses);
+        }
+        return cancelled;
+    }
+
+    @Override
+    public int lastId() throws SQLException {
+        return delegate.lastId();
+    }
+
+    @Override
+    public void countByCaregiver(BiConsumer<String, Integer> action) throws SQLException {
+        delegate.countByCaregiver(action);
+    }
+
+    @Override
+    public void forEachOfCaregiver(String caregiverName, AppointmentQuery query, Consumer<Appointment> action)
+            throws SQLException {
+        forEach(caregiverTag(caregiverName), query, action,
+                collect -> delegate.forEachOfCaregiver(caregiverName, query, collect));
+    }
+
+    @Override
+    public void forEachOfPatient(String patientName, AppointmentQuery query, Consumer<Appointment> action)
+            throws SQLException {
+        forEach(patientTag(patientName), query, action,
+                collect -> delegate.forEachOfPatient(patientName, query, collect));
+    }
+
+    private interface Query {
+        void run(Consumer<Appointment> action) throws SQLException;
+    }
+
+    // A hit replays the cached page. A miss streams the rows on as they are read, and keeps them if there are at
+    // most MAX_CACHED_ROWS.
+    private void forEach(String owner, AppointmentQuery query, Consumer<Appointment> action, Query read)
+            throws SQLException {
+        Page page = new Page(owner, query.getFromDate(), query.getToDate(), query.getAfterId(), query.getLimit());
+        boolean[] loaded = {false};
+        List<Appointment> rows = pages.get(page, List.of(owner), () -> {
+            loaded[0] = true;
+            List<Appointment> kept = new ArrayList<>();
+            read.run(appointment -> {
+                action.accept(appointment);
+                if (kept.size() <= MAX_CACHED_ROWS) {
+                    kept.add(appointment);
+                }
+            });
+            return kept.size() <= MAX_CACHED_ROWS ? List.copyOf(kept) : null;
+        });
+        if (!loaded[0]) {
+            rows.forEach(action);
+        }
+    }
+
+    private Appointment invalidate(Appointment appointment, boolean doseMoved) {
+        if (appointment != null) {
+            invalidate(appointment.getPatientName(), appointment.getCaregiverName(), appointment.getTime(),
+                    appointment.getVaccineName(), doseMoved);
+        }
+        return appointment;
+    }
+
+    private void invalidate(String patientName, String caregiverName, Date date, String vaccineName,
+                            boolean doseMoved) {
+        pages.invalidate(patientTag(patientName));
+        pages.invalidate(caregiverTag(caregiverName));
+        availabilities.invalidate(date);
+        if (doseMoved) {
+            vaccines.invalidate(vaccineName);
+        }
+    }
+
+    private static String patientTag(String patientName) {
+        return "patient " + patientName;
+    }
+
+    private static String caregiverTag(String caregiverName) {
+        return "caregiver " + caregiverName;
+    }
+}
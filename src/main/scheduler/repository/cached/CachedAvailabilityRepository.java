@@ -0,0 +1,63 @@
+package scheduler.repository.cached;
+
+import scheduler.cache.QueryCache;
+import scheduler.repository.AvailabilityRepository;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// Availabilities with the caregivers free on each date cached, for schedule searches while the availability index
+// is not loaded. Uploads invalidate their dates here, and reservations and cancellations through
+// CachedAppointmentRepository.
+public class CachedAvailabilityRepository implements AvailabilityRepository {
+    private final AvailabilityRepository delegate;
+    private final QueryCache<LocalDate, List<String>> caregivers = new QueryCache<>("caregivers by date");
+
+    public CachedAvailabilityRepository(AvailabilityRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void add(Date date, String caregiver, int slots) throws SQLException {
+        delegate.add(date, caregiver, slots);
+        invalidate(date);
+    }
+
+    @Override
+    public List<Date> addAllIfAbsent(String caregiver, List<Date> dates, int slots) throws SQLException {
+        List<Date> inserted = delegate.addAllIfAbsent(caregiver, dates, slots);
+        for (Date d : inserted) {
+            invalidate(d);
+        }
+        return inserted;
+    }
+
+    @Override
+    public List<String> findCaregivers(Date date) throws SQLException {
+        LocalDate d = date.toLocalDate();
+        return caregivers.get(d, List.of(d), () -> List.copyOf(delegate.findCaregivers(date)));
+    }
+
+    @Override
+    public void countByDate(Date start, Date end, BiConsumer<Date, Integer> action) throws SQLException {
+        delegate.countByDate(start, end, action);
+    }
+
+    @Override
+    public void forEachInRange(Date start, Date end, BiConsumer<Date, String> action) throws SQLException {
+        delegate.forEachInRange(start, end, action);
+    }
+
+    @Override
+    public void forEach(SlotConsumer action) throws SQLException {
+        delegate.forEach(action);
+    }
+
+    // the caregivers free on date have changed
+    void invalidate(Date date) {
+        caregivers.invalidate(date.toLocalDate());
+    }
+}
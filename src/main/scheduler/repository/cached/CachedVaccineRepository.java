@@ -0,0 +1,66 @@
+package scheduler.repository.cached;
+
+import scheduler.cache.QueryCache;
+import scheduler.repository.VaccineRepository;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Vaccines with dose counts cached, for the lookups that run while the dose inventory is not loaded. Every write to
+// a vaccine's doses invalidates that vaccine and the full listing, including reservations and cancellations
+// through CachedAppointmentRepository.
+public class CachedVaccineRepository implements VaccineRepository {
+    // the key and tag of the full listing
+    private static final String ALL = "*";
+
+    private final VaccineRepository delegate;
+    private final QueryCache<String, Integer> doses = new QueryCache<>("vaccine doses");
+    private final QueryCache<String, Map<String, Integer>> vaccines = new QueryCache<>("vaccines");
+
+    public CachedVaccineRepository(VaccineRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public int findDoses(String name) throws SQLException {
+        return doses.get(name, List.of(name), () -> delegate.findDoses(name));
+    }
+
+    @Override
+    public void insert(String name, int doses) throws SQLException {
+        delegate.insert(name, doses);
+        invalidate(name);
+    }
+
+    @Override
+    public void addDoses(String name, int num) throws SQLException {
+        delegate.addDoses(name, num);
+        invalidate(name);
+    }
+
+    @Override
+    public Map<String, Integer> findAll() throws SQLException {
+        return vaccines.get(ALL, List.of(ALL), () -> Collections.unmodifiableMap(delegate.findAll()));
+    }
+
+    @Override
+    public Map<String, Integer> recoverDoses() throws SQLException {
+        Map<String, Integer> recovered = delegate.recoverDoses();
+        recovered.keySet().forEach(this::invalidate);
+        return recovered;
+    }
+
+    @Override
+    public void applyDoseDeltas(Map<String, Integer> deltas, int checkpoint) throws SQLException {
+        delegate.applyDoseDeltas(deltas, checkpoint);
+        deltas.keySet().forEach(this::invalidate);
+    }
+
+    // the doses of the vaccine have changed
+    void invalidate(String name) {
+        doses.invalidate(name);
+        vaccines.invalidate(ALL);
+    }
+}
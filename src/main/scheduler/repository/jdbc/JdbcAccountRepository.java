@@ -0,0 +1,136 @@
+package scheduler.repository.jdbc;
+
+import scheduler.db.ConnectionManager;
+import scheduler.repository.Account;
+import scheduler.repository.AccountRepository;
+import scheduler.util.Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Patients or Caregivers, which share the same (Username, Salt, Hash) layout
+public class JdbcAccountRepository implements AccountRepository {
+    private final String table;
+
+    public JdbcAccountRepository(String table) {
+        this.table = table;
+    }
+
+    @Override
+    public boolean exists(String username) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String selectUsername = "SELECT Username FROM " + table + " WHERE Username = ?";
+        try {
+            PreparedStatement statement = cm.prepareStatement(selectUsername);
+            statement.setString(1, username);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Account find(String username) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String getAccount = "SELECT Salt, Hash FROM " + table + " WHERE Username = ?";
+        try {
+            PreparedStatement statement = cm.prepareStatement(getAccount);
+            statement.setString(1, username);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                // we need to call Util.trim() to get rid of the paddings,
+                // try to remove the use of Util.trim() and you'll see :)
+                return new Account(username, resultSet.getBytes("Salt"), Util.trim(resultSet.getBytes("Hash")));
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void forEachUsername(Consumer<String> action) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String selectUsernames = "SELECT Username FROM " + table;
+        try {
+            PreparedStatement statement = cm.prepareStatement(selectUsernames);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    action.accept(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void insert(Account account) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String addAccount = "INSERT INTO " + table + " VALUES (? , ?, ?)";
+        try {
+            PreparedStatement statement = cm.prepareStatement(addAccount);
+            statement.setString(1, account.getUsername());
+            statement.setBytes(2, account.getSalt());
+            statement.setBytes(3, account.getHash());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public boolean[] insertAllIfAbsent(List<Account> accounts) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addAccount = "INSERT INTO " + table + " (Username, Salt, Hash) SELECT ?, ?, ? " +
+                "WHERE NOT EXISTS (SELECT * FROM " + table + " WITH (UPDLOCK, HOLDLOCK) WHERE Username = ?)";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = cm.prepareStatement(addAccount);
+            for (Account account : accounts) {
+                statement.setString(1, account.getUsername());
+                statement.setBytes(2, account.getSalt());
+                statement.setBytes(3, account.getHash());
+                statement.setString(4, account.getUsername());
+                statement.addBatch();
+            }
+            int[] counts = statement.executeBatch();
+            con.commit();
+            boolean[] inserted = new boolean[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                inserted[i] = counts[i] != 0;
+            }
+            return inserted;
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,670 @@
+package scheduler.repository.jdbc;
+
+import scheduler.db.ConnectionManager;
+import scheduler.model.Appointment;
+import scheduler.repository.AppointmentQuery;
+import scheduler.repository.AppointmentRepository;
+import scheduler.repository.Reservation;
+import scheduler.util.Util;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class JdbcAppointmentRepository implements AppointmentRepository {
+    // rows per round trip when reading appointment history
+    private static final int FETCH_SIZE = Util.getConfigInt("AppointmentFetchSize", 500);
+    // Multi-row inserts on SQL Server go out padded to one of these row counts, the unused rows NULL, so only a few
+    // statement texts are ever prepared, cached and timed. SQL Server allows at most 2100 parameters per statement,
+    // four per inserted appointment, which caps the largest.
+    private static final int[] INSERT_SIZES = {1, 8, 64, 500};
+    private static final String[] INSERT_STATEMENTS = new String[INSERT_SIZES.length];
+
+    static {
+        for (int n = 0; n < INSERT_SIZES.length; n++) {
+            StringBuilder insertAppointments = new StringBuilder(
+                    "INSERT INTO Appointments (CaregiverName, PatientName, VaccineName, Time) " +
+                    "OUTPUT INSERTED.Id, INSERTED.CaregiverName, INSERTED.PatientName " +
+                    "SELECT CaregiverName, PatientName, VaccineName, Time FROM (VALUES ");
+            for (int k = 0; k < INSERT_SIZES[n]; k++) {
+                insertAppointments.append(k == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+            }
+            insertAppointments.append(") AS V (CaregiverName, PatientName, VaccineName, Time) " +
+                    "WHERE CaregiverName IS NOT NULL");
+            INSERT_STATEMENTS[n] = insertAppointments.toString();
+        }
+    }
+
+    // The whole reservation is a single batch and a single transaction, so it costs one round trip:
+    //  1. claim a slot of a caregiver free on the date by decrementing their Availabilities row: the candidate if
+    //     they have one left, otherwise the first caregiver in username order who does. UPDLOCK + READPAST makes
+    //     concurrent reservers skip rows another transaction is claiming instead of queueing behind them
+    //  2. take a dose only if one is left; skipped when the DoseInventory has already taken it in memory
+    //  3. insert the appointment and read the id back through OUTPUT, so it is always our own row
+    // A status row is returned in every case; anything but 0 rolls the claim back.
+    private static final String reserveAppointment =
+            "SET NOCOUNT ON; SET XACT_ABORT ON; " +
+            "DECLARE @date date = ?, @vaccine varchar(255) = ?, @patient varchar(255) = ?, " +
+            "        @candidate varchar(255) = ?, @takeDose bit = ?; " +
+            "DECLARE @claimed TABLE (Username varchar(255)); " +
+            "DECLARE @taken int = 1; " +
+            "BEGIN TRANSACTION; " +
+            "UPDATE Availabilities WITH (READPAST, ROWLOCK) SET Slots = Slots - 1 " +
+            "OUTPUT INSERTED.Username INTO @claimed " +
+            "WHERE Time = @date AND Username = @candidate AND Slots > 0; " +
+            "IF NOT EXISTS (SELECT * FROM @claimed) " +
+            "  UPDATE Availabilities SET Slots = Slots - 1 OUTPUT INSERTED.Username INTO @claimed " +
+            "  WHERE Time = @date AND Slots > 0 AND Username = (" +
+            "    SELECT TOP 1 Username FROM Availabilities WITH (UPDLOCK, READPAST, ROWLOCK)" +
+            "    WHERE Time = @date AND Slots > 0 ORDER BY Username); " +
+            "IF NOT EXISTS (SELECT * FROM @claimed) " +
+            "BEGIN " +
+            "  ROLLBACK TRANSACTION; " +
+            "  SELECT 1 AS Status, NULL AS Id, NULL AS CaregiverName; " +
+            "END " +
+            "ELSE " +
+            "BEGIN " +
+            "  IF @takeDose = 1 " +
+            "  BEGIN " +
+            "    UPDATE Vaccines SET Doses = Doses - 1 WHERE Name = @vaccine AND Doses > 0; " +
+            "    SET @taken = @@ROWCOUNT; " +
+            "  END " +
+            "  IF @taken = 0 " +
+            "  BEGIN " +
+            "    ROLLBACK TRANSACTION; " +
+            "    SELECT 2 AS Status, NULL AS Id, NULL AS CaregiverName; " +
+            "  END " +
+            "  ELSE " +
+            "  BEGIN " +
+            "    INSERT INTO Appointments (CaregiverName, PatientName, VaccineName, Time) " +
+            "    OUTPUT 0 AS Status, INSERTED.Id, INSERTED.CaregiverName " +
+            "    SELECT Username, @patient, @vaccine, @date FROM @claimed; " +
+            "    COMMIT TRANSACTION; " +
+            "  END " +
+            "END";
+
+    @Override
+    public Reservation reserve(String patientName, String vaccineName, Date date, String candidate, boolean takeDose)
+            throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            return ConnectionManager.isSqlServer()
+                    ? reserveInBatch(cm, patientName, vaccineName, date, candidate, takeDose)
+                    : reserveInSteps(cm, con, patientName, vaccineName, date, candidate, takeDose);
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static Reservation reserveInBatch(ConnectionManager cm, String patientName, String vaccineName,
+                                              Date date, String candidate, boolean takeDose) throws SQLException {
+        PreparedStatement statement = cm.prepareStatement(reserveAppointment);
+        statement.setDate(1, date);
+        statement.setString(2, vaccineName);
+        statement.setString(3, patientName);
+        statement.setString(4, candidate);
+        statement.setBoolean(5, takeDose);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new SQLException("Reservation returned no status");
+            }
+            int code = resultSet.getInt("Status");
+            if (code == 1) {
+                return Reservation.failed(Appointment.ReserveStatus.NO_CAREGIVER);
+            } else if (code == 2) {
+                return Reservation.failed(Appointment.ReserveStatus.NO_DOSES);
+            }
+            return Reservation.booked(resultSet.getInt("Id"), resultSet.getString("CaregiverName"));
+        }
+    }
+
+    // The same reservation for databases without T-SQL: the same steps in one transaction, one statement
+    // at a time. The conditional decrement of the caregiver's slots is the claim itself; if other reservations
+    // took the last one first, the next free caregiver is looked up and claimed instead.
+    private static Reservation reserveInSteps(ConnectionManager cm, Connection con, String patientName,
+                                              String vaccineName, Date date, String candidate, boolean takeDose)
+            throws SQLException {
+        String selectCaregiver = "SELECT Username FROM Availabilities WHERE Time = ? AND Slots > 0 " +
+                "ORDER BY Username FETCH FIRST 1 ROWS ONLY";
+        String takeSlot = "UPDATE Availabilities SET Slots = Slots - 1 WHERE Time = ? AND Username = ? AND Slots > 0";
+        String takeVaccine = "UPDATE Vaccines SET Doses = Doses - 1 WHERE Name = ? AND Doses > 0";
+        String insertAppointment = "INSERT INTO Appointments (CaregiverName, PatientName, VaccineName, Time) " +
+                "VALUES (?, ?, ?, ?)";
+        con.setAutoCommit(false);
+        PreparedStatement statement;
+        String caregiver = candidate;
+        while (true) {
+            if (caregiver != null) {
+                statement = cm.prepareStatement(takeSlot);
+                statement.setDate(1, date);
+                statement.setString(2, caregiver);
+                if (statement.executeUpdate() == 1) {
+                    break;
+                }
+            }
+            statement = cm.prepareStatement(selectCaregiver);
+            statement.setDate(1, date);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    con.rollback();
+                    return Reservation.failed(Appointment.ReserveStatus.NO_CAREGIVER);
+                }
+                caregiver = resultSet.getString(1);
+            }
+        }
+
+        if (takeDose) {
+            statement = cm.prepareStatement(takeVaccine);
+            statement.setString(1, vaccineName);
+            if (statement.executeUpdate() == 0) {
+                con.rollback();
+                return Reservation.failed(Appointment.ReserveStatus.NO_DOSES);
+            }
+        }
+
+        statement = cm.prepareStatement(insertAppointment, Statement.RETURN_GENERATED_KEYS);
+        statement.setString(1, caregiver);
+        statement.setString(2, patientName);
+        statement.setString(3, vaccineName);
+        statement.setDate(4, date);
+        statement.executeUpdate();
+        int id;
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            if (!keys.next()) {
+                throw new SQLException("Reservation returned no id");
+            }
+            id = keys.getInt(1);
+        }
+        con.commit();
+        return Reservation.booked(id, caregiver);
+    }
+
+    // Group commit of many reservations for one date and vaccine, in one transaction:
+    //  1. claim a slot of each patient's candidate caregiver, in one batch of conditional decrements
+    //  2. claim slots of the first free caregivers in username order for everyone left, as many of each one's as
+    //     needed, again in one batch; a concurrent transaction may win some of them, so repeat until everyone has
+    //     a caregiver or nobody is free
+    //  3. take the doses for everyone with a caregiver in one update, or one at a time if too few are left; anyone
+    //     without a dose gives their slot back
+    //  4. insert every booked appointment in one round trip and read back the ids
+    @Override
+    public List<Reservation> reserveAll(List<String> patientNames, String vaccineName, Date date,
+                                        List<String> candidates, boolean takeDoses) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String takeSlots = "UPDATE Availabilities SET Slots = Slots - ? WHERE Time = ? AND Username = ? AND Slots >= ?";
+        String selectCaregivers = "SELECT Username, Slots FROM Availabilities WHERE Time = ? AND Slots > 0 " +
+                "ORDER BY Username OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY";
+        int n = patientNames.size();
+        String[] caregivers = new String[n];
+        Appointment.ReserveStatus[] failures = new Appointment.ReserveStatus[n];
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = cm.prepareStatement(takeSlots);
+            List<Integer> claiming = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (candidates.get(i) != null) {
+                    statement.setInt(1, 1);
+                    statement.setDate(2, date);
+                    statement.setString(3, candidates.get(i));
+                    statement.setInt(4, 1);
+                    statement.addBatch();
+                    claiming.add(i);
+                }
+            }
+            int missing = n;
+            if (!claiming.isEmpty()) {
+                int[] counts = statement.executeBatch();
+                for (int k = 0; k < counts.length; k++) {
+                    if (counts[k] > 0) {
+                        caregivers[claiming.get(k)] = candidates.get(claiming.get(k));
+                        missing--;
+                    }
+                }
+            }
+
+            while (missing > 0) {
+                statement = cm.prepareStatement(selectCaregivers);
+                statement.setDate(1, date);
+                statement.setInt(2, missing);
+                List<String> free = new ArrayList<>();
+                List<Integer> wanted = new ArrayList<>();
+                int found = 0;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (found < missing && resultSet.next()) {
+                        int slots = Math.min(resultSet.getInt(2), missing - found);
+                        free.add(resultSet.getString(1));
+                        wanted.add(slots);
+                        found += slots;
+                    }
+                }
+                if (free.isEmpty()) {
+                    break;
+                }
+                statement = cm.prepareStatement(takeSlots);
+                for (int k = 0; k < free.size(); k++) {
+                    statement.setInt(1, wanted.get(k));
+                    statement.setDate(2, date);
+                    statement.setString(3, free.get(k));
+                    statement.setInt(4, wanted.get(k));
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                int next = 0;
+                for (int k = 0; k < counts.length; k++) {
+                    if (counts[k] == 0) {
+                        continue;
+                    }
+                    for (int slot = 0; slot < wanted.get(k); slot++) {
+                        while (caregivers[next] != null) {
+                            next++;
+                        }
+                        caregivers[next] = free.get(k);
+                        missing--;
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (caregivers[i] == null) {
+                    failures[i] = Appointment.ReserveStatus.NO_CAREGIVER;
+                }
+            }
+
+            if (takeDoses && missing < n) {
+                takeDoses(cm, vaccineName, date, caregivers, failures, n - missing);
+            }
+
+            int[] ids = insertAppointments(cm, patientNames, vaccineName, date, caregivers, failures);
+            con.commit();
+            List<Reservation> reservations = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                reservations.add(failures[i] != null ? Reservation.failed(failures[i])
+                        : Reservation.booked(ids[i], caregivers[i]));
+            }
+            return reservations;
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static void takeDoses(ConnectionManager cm, String vaccineName, Date date, String[] caregivers,
+                                  Appointment.ReserveStatus[] failures, int needed) throws SQLException {
+        String takeVaccines = "UPDATE Vaccines SET Doses = Doses - ? WHERE Name = ? AND Doses >= ?";
+        String giveBackSlot = "UPDATE Availabilities SET Slots = Slots + 1 WHERE Time = ? AND Username = ?";
+        PreparedStatement statement = cm.prepareStatement(takeVaccines);
+        statement.setInt(1, needed);
+        statement.setString(2, vaccineName);
+        statement.setInt(3, needed);
+        if (statement.executeUpdate() == 1) {
+            return;
+        }
+        // too few left for everyone: the first ones in the batch get what there is
+        statement.setInt(1, 1);
+        statement.setString(2, vaccineName);
+        statement.setInt(3, 1);
+        PreparedStatement giveBack = cm.prepareStatement(giveBackSlot);
+        boolean givingBack = false;
+        boolean exhausted = false;
+        for (int i = 0; i < caregivers.length; i++) {
+            if (failures[i] != null) {
+                continue;
+            }
+            if (!exhausted && statement.executeUpdate() == 1) {
+                continue;
+            }
+            exhausted = true;
+            failures[i] = Appointment.ReserveStatus.NO_DOSES;
+            giveBack.setDate(1, date);
+            giveBack.setString(2, caregivers[i]);
+            giveBack.addBatch();
+            givingBack = true;
+        }
+        if (givingBack) {
+            giveBack.executeBatch();
+        }
+    }
+
+    // Insert the appointments of everyone not in failures and return their ids by position. SQL Server returns
+    // the ids of a multi-row insert through OUTPUT; elsewhere the insert is a JDBC batch with generated keys.
+    private static int[] insertAppointments(ConnectionManager cm, List<String> patientNames, String vaccineName,
+                                            Date date, String[] caregivers, Appointment.ReserveStatus[] failures)
+            throws SQLException {
+        int[] ids = new int[caregivers.length];
+        List<Integer> booked = new ArrayList<>();
+        for (int i = 0; i < caregivers.length; i++) {
+            if (failures[i] == null) {
+                booked.add(i);
+            }
+        }
+        if (booked.isEmpty()) {
+            return ids;
+        }
+        if (ConnectionManager.isSqlServer()) {
+            // OUTPUT returns the rows in no particular order: match them up by caregiver and patient, which only
+            // repeat for appointments that are identical apart from their id
+            Map<String, ArrayDeque<Integer>> positions = new HashMap<>();
+            int largest = INSERT_SIZES[INSERT_SIZES.length - 1];
+            for (int from = 0; from < booked.size(); from += largest) {
+                List<Integer> chunk = booked.subList(from, Math.min(from + largest, booked.size()));
+                int n = 0;
+                while (INSERT_SIZES[n] < chunk.size()) {
+                    n++;
+                }
+                PreparedStatement statement = cm.prepareStatement(INSERT_STATEMENTS[n]);
+                int p = 1;
+                for (int i : chunk) {
+                    statement.setString(p++, caregivers[i]);
+                    statement.setString(p++, patientNames.get(i));
+                    statement.setString(p++, vaccineName);
+                    statement.setDate(p++, date);
+                    positions.computeIfAbsent(caregivers[i] + "\0" + patientNames.get(i), k -> new ArrayDeque<>())
+                            .add(i);
+                }
+                // the padding rows, which the WHERE clause leaves out
+                for (int k = chunk.size(); k < INSERT_SIZES[n]; k++) {
+                    statement.setNull(p++, Types.VARCHAR);
+                    statement.setNull(p++, Types.VARCHAR);
+                    statement.setNull(p++, Types.VARCHAR);
+                    statement.setNull(p++, Types.DATE);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids[positions.get(resultSet.getString(2) + "\0" + resultSet.getString(3)).remove()] =
+                                resultSet.getInt(1);
+                    }
+                }
+            }
+            return ids;
+        }
+        PreparedStatement statement = cm.prepareStatement("INSERT INTO Appointments " +
+                "(CaregiverName, PatientName, VaccineName, Time) VALUES (?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+        for (int i : booked) {
+            statement.setString(1, caregivers[i]);
+            statement.setString(2, patientNames.get(i));
+            statement.setString(3, vaccineName);
+            statement.setDate(4, date);
+            statement.addBatch();
+        }
+        statement.executeBatch();
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            for (int i : booked) {
+                if (!keys.next()) {
+                    throw new SQLException("Reservation returned no id");
+                }
+                ids[i] = keys.getInt(1);
+            }
+        }
+        return ids;
+    }
+
+    // Which appointments a cancel applies to, as a T-SQL condition over the variables the cancel batch declares
+    // and as a portable condition with ? parameters, bound by bind()
+    private enum CancelBy {
+        PATIENT("Id = @id AND PatientName = @username", "Id = ? AND PatientName = ?"),
+        CAREGIVER("Id = @id AND CaregiverName = @username", "Id = ? AND CaregiverName = ?"),
+        DAY("CaregiverName = @username AND Time = @date", "CaregiverName = ? AND Time = ?");
+
+        // SQL Server: the whole cancel is one batch and one transaction, so it costs one round trip. The deleted
+        // rows are captured through OUTPUT, every caregiver gets their slots back and every vaccine its doses in
+        // one statement each, and the cancelled appointments are returned at the end. A caregiver with no row for
+        // the date (booked before slots were counted) gets one with the slots they gave up.
+        private final String batch;
+        // elsewhere: the same set-based steps one statement at a time, after locking the rows with FOR UPDATE
+        private final String selectAppointments;
+        private final String restoreSlots;
+        private final String restoreAvailabilities;
+        private final String giveBackDoses;
+        private final String deleteAppointments;
+
+        CancelBy(String tsqlCondition, String condition) {
+            this.batch = "SET NOCOUNT ON; SET XACT_ABORT ON; " +
+                    "DECLARE @id int = ?, @username varchar(255) = ?, @date date = ?, @giveBack bit = ?; " +
+                    "DECLARE @cancelled TABLE (Id int, CaregiverName varchar(255), PatientName varchar(255), " +
+                    "                          VaccineName varchar(255), Time date); " +
+                    "BEGIN TRANSACTION; " +
+                    "DELETE FROM Appointments " +
+                    "OUTPUT DELETED.Id, DELETED.CaregiverName, DELETED.PatientName, DELETED.VaccineName, " +
+                    "       DELETED.Time INTO @cancelled " +
+                    "WHERE " + tsqlCondition + "; " +
+                    "UPDATE A SET Slots = A.Slots + C.Slots FROM Availabilities AS A " +
+                    "JOIN (SELECT Time, CaregiverName, COUNT(*) AS Slots FROM @cancelled " +
+                    "      GROUP BY Time, CaregiverName) AS C " +
+                    "ON A.Time = C.Time AND A.Username = C.CaregiverName; " +
+                    "INSERT INTO Availabilities (Time, Username, Slots) " +
+                    "SELECT C.Time, C.CaregiverName, COUNT(*) FROM @cancelled AS C " +
+                    "WHERE NOT EXISTS (SELECT * FROM Availabilities AS A " +
+                    "                  WHERE A.Time = C.Time AND A.Username = C.CaregiverName) " +
+                    "GROUP BY C.Time, C.CaregiverName; " +
+                    "IF @giveBack = 1 " +
+                    "  UPDATE V SET Doses = V.Doses + C.Doses FROM Vaccines AS V " +
+                    "  JOIN (SELECT VaccineName, COUNT(*) AS Doses FROM @cancelled GROUP BY VaccineName) AS C " +
+                    "  ON C.VaccineName = V.Name; " +
+                    "COMMIT TRANSACTION; " +
+                    "SELECT Id, CaregiverName, PatientName, VaccineName, Time FROM @cancelled ORDER BY Id";
+            this.selectAppointments = "SELECT Id, CaregiverName, PatientName, VaccineName, Time FROM Appointments " +
+                    "WHERE " + condition + " ORDER BY Id FOR UPDATE";
+            String sameSlot = " AND C.Time = Availabilities.Time AND C.CaregiverName = Availabilities.Username";
+            this.restoreSlots = "UPDATE Availabilities SET Slots = Slots + " +
+                    "(SELECT COUNT(*) FROM Appointments AS C WHERE " + condition + sameSlot + ") " +
+                    "WHERE EXISTS (SELECT * FROM Appointments AS C WHERE " + condition + sameSlot + ")";
+            this.restoreAvailabilities = "INSERT INTO Availabilities (Time, Username, Slots) " +
+                    "SELECT C.Time, C.CaregiverName, COUNT(*) FROM Appointments AS C " +
+                    "WHERE " + condition + " AND NOT EXISTS (SELECT * FROM Availabilities AS A " +
+                    "WHERE A.Time = C.Time AND A.Username = C.CaregiverName) GROUP BY C.Time, C.CaregiverName";
+            this.giveBackDoses = "UPDATE Vaccines SET Doses = Doses + " +
+                    "(SELECT COUNT(*) FROM Appointments AS C WHERE " + condition +
+                    " AND C.VaccineName = Vaccines.Name) " +
+                    "WHERE Name IN (SELECT C.VaccineName FROM Appointments AS C WHERE " + condition + ")";
+            this.deleteAppointments = "DELETE FROM Appointments WHERE " + condition;
+        }
+
+        // bind the portable condition's parameters starting at index i; returns the next free index
+        int bind(PreparedStatement statement, int i, int id, String username, Date date) throws SQLException {
+            if (this == DAY) {
+                statement.setString(i++, username);
+                statement.setDate(i++, date);
+            } else {
+                statement.setInt(i++, id);
+                statement.setString(i++, username);
+            }
+            return i;
+        }
+    }
+
+    @Override
+    public Appointment cancelOfPatient(int id, String patientName, boolean giveBackDoses) throws SQLException {
+        List<Appointment> cancelled = cancel(CancelBy.PATIENT, id, patientName, null, giveBackDoses);
+        return cancelled.isEmpty() ? null : cancelled.get(0);
+    }
+
+    @Override
+    public Appointment cancelOfCaregiver(int id, String caregiverName, boolean giveBackDoses) throws SQLException {
+        List<Appointment> cancelled = cancel(CancelBy.CAREGIVER, id, caregiverName, null, giveBackDoses);
+        return cancelled.isEmpty() ? null : cancelled.get(0);
+    }
+
+    @Override
+    public List<Appointment> cancelDay(String caregiverName, Date date, boolean giveBackDoses) throws SQLException {
+        return cancel(CancelBy.DAY, 0, caregiverName, date, giveBackDoses);
+    }
+
+    private static List<Appointment> cancel(CancelBy by, int id, String username, Date date, boolean giveBackDoses)
+            throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        List<Appointment> cancelled = new ArrayList<>();
+        try {
+            if (ConnectionManager.isSqlServer()) {
+                PreparedStatement statement = cm.prepareStatement(by.batch);
+                statement.setInt(1, id);
+                statement.setString(2, username);
+                statement.setDate(3, date);
+                statement.setBoolean(4, giveBackDoses);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    readAppointments(resultSet, cancelled);
+                }
+                return cancelled;
+            }
+
+            con.setAutoCommit(false);
+            PreparedStatement statement = cm.prepareStatement(by.selectAppointments);
+            by.bind(statement, 1, id, username, date);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                readAppointments(resultSet, cancelled);
+            }
+            if (cancelled.isEmpty()) {
+                con.rollback();
+                return cancelled;
+            }
+            statement = cm.prepareStatement(by.restoreSlots);
+            by.bind(statement, by.bind(statement, 1, id, username, date), id, username, date);
+            statement.executeUpdate();
+            statement = cm.prepareStatement(by.restoreAvailabilities);
+            by.bind(statement, 1, id, username, date);
+            statement.executeUpdate();
+            if (giveBackDoses) {
+                statement = cm.prepareStatement(by.giveBackDoses);
+                by.bind(statement, by.bind(statement, 1, id, username, date), id, username, date);
+                statement.executeUpdate();
+            }
+            statement = cm.prepareStatement(by.deleteAppointments);
+            by.bind(statement, 1, id, username, date);
+            statement.executeUpdate();
+            con.commit();
+            return cancelled;
+        } catch (SQLException e) {
+            if (!con.getAutoCommit()) {
+                con.rollback();
+            }
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static void readAppointments(ResultSet resultSet, List<Appointment> appointments) throws SQLException {
+        while (resultSet.next()) {
+            appointments.add(new Appointment.AppointmentBuilder(resultSet.getInt(1), resultSet.getString(2),
+                    resultSet.getString(3), resultSet.getString(4), resultSet.getDate(5)).build());
+        }
+    }
+
+    @Override
+    public int lastId() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String selectLastId = "SELECT COALESCE(MAX(Id), 0) FROM Appointments";
+        try {
+            PreparedStatement statement = cm.prepareStatement(selectLastId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void countByCaregiver(BiConsumer<String, Integer> action) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String countAppointments = "SELECT CaregiverName, COUNT(*) FROM Appointments GROUP BY CaregiverName";
+        try {
+            PreparedStatement statement = cm.prepareStatement(countAppointments);
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    action.accept(resultSet.getString(1), resultSet.getInt(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void forEachOfCaregiver(String caregiverName, AppointmentQuery query, Consumer<Appointment> action)
+            throws SQLException {
+        forEach("CaregiverName", caregiverName, query, action);
+    }
+
+    @Override
+    public void forEachOfPatient(String patientName, AppointmentQuery query, Consumer<Appointment> action)
+            throws SQLException {
+        forEach("PatientName", patientName, query, action);
+    }
+
+    // Keyset pagination: each page seeks straight to Id > afterId, so it costs the same however deep into the
+    // history it is. Rows are fetched FETCH_SIZE at a time and handed on as they arrive.
+    private static void forEach(String column, String username, AppointmentQuery query,
+                                Consumer<Appointment> action) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        StringBuilder selectAppointments = new StringBuilder(
+                "SELECT A.Id, A.CaregiverName, A.PatientName, A.VaccineName, A.Time " +
+                "FROM Appointments AS A WHERE A." + column + " = ? AND A.Id > ?");
+        if (query.getFromDate() != null) {
+            selectAppointments.append(" AND A.Time >= ?");
+        }
+        if (query.getToDate() != null) {
+            selectAppointments.append(" AND A.Time <= ?");
+        }
+        selectAppointments.append(" ORDER BY A.Id");
+        if (query.getLimit() > 0) {
+            selectAppointments.append(" OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY");
+        }
+        try {
+            PreparedStatement statement = cm.prepareStatement(selectAppointments.toString());
+            int i = 1;
+            statement.setString(i++, username);
+            statement.setInt(i++, query.getAfterId());
+            if (query.getFromDate() != null) {
+                statement.setDate(i++, query.getFromDate());
+            }
+            if (query.getToDate() != null) {
+                statement.setDate(i++, query.getToDate());
+            }
+            if (query.getLimit() > 0) {
+                statement.setInt(i, query.getLimit());
+            }
+            statement.setFetchSize(query.getLimit() > 0 ? Math.min(query.getLimit(), FETCH_SIZE) : FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    action.accept(new Appointment.AppointmentBuilder(resultSet.getInt(1), resultSet.getString(2),
+                            resultSet.getString(3), resultSet.getString(4), resultSet.getDate(5)).build());
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package scheduler.repository.jdbc;
+
+import scheduler.db.ConnectionManager;
+import scheduler.repository.AvailabilityRepository;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+public class JdbcAvailabilityRepository implements AvailabilityRepository {
+    // rows sent to the server per executeBatch() call when adding many dates
+    private static final int BATCH_SIZE = 500;
+
+    // slots add up: an existing row is topped up, and only a caregiver's first upload of the date inserts one
+    @Override
+    public void add(Date date, String caregiver, int slots) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addSlots = "UPDATE Availabilities SET Slots = Slots + ? WHERE Time = ? AND Username = ?";
+        String addAvailability = "INSERT INTO Availabilities (Time, Username, Slots) VALUES (?, ?, ?)";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = cm.prepareStatement(addSlots);
+            statement.setInt(1, slots);
+            statement.setDate(2, date);
+            statement.setString(3, caregiver);
+            if (statement.executeUpdate() == 0) {
+                statement = cm.prepareStatement(addAvailability);
+                statement.setDate(1, date);
+                statement.setString(2, caregiver);
+                statement.setInt(3, slots);
+                statement.executeUpdate();
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // A date whose slots are all booked keeps its row at 0 and is refilled in place; a date the caregiver never
+    // uploaded is inserted. Each is one batch per BATCH_SIZE dates.
+    @Override
+    public List<Date> addAllIfAbsent(String caregiver, List<Date> dates, int slots) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String refillAvailability = "UPDATE Availabilities SET Slots = ? " +
+                "WHERE Time = ? AND Username = ? AND Slots = 0";
+        String addAvailability = "INSERT INTO Availabilities (Time, Username, Slots) SELECT ?, ?, ? " +
+                "WHERE NOT EXISTS (SELECT * FROM Availabilities WITH (UPDLOCK, HOLDLOCK) " +
+                "WHERE Time = ? AND Username = ?)";
+        try {
+            con.setAutoCommit(false);
+            List<Date> inserted = new ArrayList<>();
+            for (int start = 0; start < dates.size(); start += BATCH_SIZE) {
+                List<Date> batch = dates.subList(start, Math.min(dates.size(), start + BATCH_SIZE));
+                PreparedStatement statement = cm.prepareStatement(refillAvailability);
+                for (Date d : batch) {
+                    statement.setInt(1, slots);
+                    statement.setDate(2, d);
+                    statement.setString(3, caregiver);
+                    statement.addBatch();
+                }
+                int[] refilled = statement.executeBatch();
+
+                statement = cm.prepareStatement(addAvailability);
+                for (Date d : batch) {
+                    statement.setDate(1, d);
+                    statement.setString(2, caregiver);
+                    statement.setInt(3, slots);
+                    statement.setDate(4, d);
+                    statement.setString(5, caregiver);
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (refilled[i] > 0 || counts[i] > 0) {
+                        inserted.add(batch.get(i));
+                    }
+                }
+            }
+            con.commit();
+            return inserted;
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public List<String> findCaregivers(Date date) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String selectUsernames = "SELECT A.Username FROM Availabilities AS A WHERE A.Time = ? AND A.Slots > 0 " +
+                "ORDER BY A.Username";
+        try {
+            PreparedStatement statement = cm.prepareStatement(selectUsernames);
+            statement.setDate(1, date);
+            List<String> caregivers = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    caregivers.add(resultSet.getString(1));
+                }
+            }
+            return caregivers;
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // one range scan of the primary key, grouped as it is read
+    @Override
+    public void countByDate(Date start, Date end, BiConsumer<Date, Integer> action) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String countCaregivers = "SELECT Time, COUNT(*) FROM Availabilities WHERE Time >= ? AND Time <= ? " +
+                "AND Slots > 0 GROUP BY Time ORDER BY Time";
+        try {
+            PreparedStatement statement = cm.prepareStatement(countCaregivers);
+            statement.setDate(1, start);
+            statement.setDate(2, end);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    action.accept(resultSet.getDate(1), resultSet.getInt(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void forEachInRange(Date start, Date end, BiConsumer<Date, String> action) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String selectAvailabilities = "SELECT Time, Username FROM Availabilities WHERE Time >= ? AND Time <= ? " +
+                "AND Slots > 0 ORDER BY Time, Username";
+        try {
+            PreparedStatement statement = cm.prepareStatement(selectAvailabilities);
+            statement.setDate(1, start);
+            statement.setDate(2, end);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    action.accept(resultSet.getDate(1), resultSet.getString(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void forEach(SlotConsumer action) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String selectAvailabilities = "SELECT Time, Username, Slots FROM Availabilities WHERE Slots > 0";
+        try {
+            PreparedStatement statement = cm.prepareStatement(selectAvailabilities);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    action.accept(resultSet.getDate(1), resultSet.getString(2), resultSet.getInt(3));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
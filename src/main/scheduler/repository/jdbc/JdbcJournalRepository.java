@@ -0,0 +1,170 @@
+package scheduler.repository.jdbc;
+
+import scheduler.db.ConnectionManager;
+import scheduler.repository.Account;
+import scheduler.repository.journal.JournalEntry;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Writes journaled commands to the database for the CommandJournal, and the JournalCheckpoint row that records
+// how far it got
+public class JdbcJournalRepository {
+    private static final String selectCheckpoint = "SELECT COALESCE(MAX(LastSequence), 0) FROM JournalCheckpoint";
+
+    // the sequence number of the last journaled command applied, 0 if there are none
+    public long lastApplied() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        try {
+            PreparedStatement statement = cm.prepareStatement(selectCheckpoint);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Apply the entries and record the last one's sequence number, in one transaction. Accounts go in before
+    // availabilities, whose caregivers they may be. The slots for each caregiver and date, and the doses for each
+    // vaccine, are added up into one update each. Returns the account entries that were not inserted because the
+    // username had been taken in the meantime.
+    public List<JournalEntry> apply(List<JournalEntry> entries) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addDoses = "UPDATE Vaccines SET Doses = Doses + ? WHERE Name = ?";
+        String insertVaccine = "INSERT INTO Vaccines VALUES (?, ?)";
+        try {
+            con.setAutoCommit(false);
+            List<JournalEntry> skipped = new ArrayList<>();
+            addAccounts(cm, "Patients", JournalEntry.Type.PATIENT, entries, skipped);
+            addAccounts(cm, "Caregivers", JournalEntry.Type.CAREGIVER, entries, skipped);
+
+            Map<Slot, Integer> slots = new LinkedHashMap<>();
+            Map<String, Integer> doses = new TreeMap<>();
+            for (JournalEntry entry : entries) {
+                if (entry.getType() == JournalEntry.Type.AVAILABILITY) {
+                    slots.merge(new Slot(entry.getDate(), entry.getName()), entry.getSlots(), Integer::sum);
+                } else if (entry.getType() == JournalEntry.Type.DOSES) {
+                    doses.merge(entry.getName(), entry.getDoses(), Integer::sum);
+                }
+            }
+            if (!slots.isEmpty()) {
+                addSlots(cm, slots);
+            }
+
+            PreparedStatement statement;
+            for (Map.Entry<String, Integer> vaccine : doses.entrySet()) {
+                statement = cm.prepareStatement(addDoses);
+                statement.setInt(1, vaccine.getValue());
+                statement.setString(2, vaccine.getKey());
+                if (statement.executeUpdate() == 0) {
+                    statement = cm.prepareStatement(insertVaccine);
+                    statement.setString(1, vaccine.getKey());
+                    statement.setInt(2, vaccine.getValue());
+                    statement.executeUpdate();
+                }
+            }
+
+            writeCheckpoint(cm, entries.get(entries.size() - 1).getSequence());
+            con.commit();
+            return skipped;
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // the accounts whose username already exists are added to skipped
+    private static void addAccounts(ConnectionManager cm, String table, JournalEntry.Type type,
+                                    List<JournalEntry> entries, List<JournalEntry> skipped) throws SQLException {
+        String addAccount = "INSERT INTO " + table + " (Username, Salt, Hash) SELECT ?, ?, ? " +
+                "WHERE NOT EXISTS (SELECT * FROM " + table + " WITH (UPDLOCK, HOLDLOCK) WHERE Username = ?)";
+        PreparedStatement statement = null;
+        List<JournalEntry> batched = new ArrayList<>();
+        for (JournalEntry entry : entries) {
+            if (entry.getType() != type) {
+                continue;
+            }
+            if (statement == null) {
+                statement = cm.prepareStatement(addAccount);
+            }
+            batched.add(entry);
+            Account account = entry.getAccount();
+            statement.setString(1, account.getUsername());
+            statement.setBytes(2, account.getSalt());
+            statement.setBytes(3, account.getHash());
+            statement.setString(4, account.getUsername());
+            statement.addBatch();
+        }
+        if (statement != null) {
+            int[] counts = statement.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    skipped.add(batched.get(i));
+                }
+            }
+        }
+    }
+
+    // top up the rows the caregivers already have, in one batch, then insert the rest in another
+    private static void addSlots(ConnectionManager cm, Map<Slot, Integer> slots) throws SQLException {
+        String addSlots = "UPDATE Availabilities SET Slots = Slots + ? WHERE Time = ? AND Username = ?";
+        String addAvailability = "INSERT INTO Availabilities (Time, Username, Slots) VALUES (?, ?, ?)";
+        PreparedStatement statement = cm.prepareStatement(addSlots);
+        for (Map.Entry<Slot, Integer> slot : slots.entrySet()) {
+            statement.setInt(1, slot.getValue());
+            statement.setDate(2, slot.getKey().date());
+            statement.setString(3, slot.getKey().caregiver());
+            statement.addBatch();
+        }
+        int[] counts = statement.executeBatch();
+        statement = null;
+        int k = 0;
+        for (Map.Entry<Slot, Integer> slot : slots.entrySet()) {
+            if (counts[k++] > 0) {
+                continue;
+            }
+            if (statement == null) {
+                statement = cm.prepareStatement(addAvailability);
+            }
+            statement.setDate(1, slot.getKey().date());
+            statement.setString(2, slot.getKey().caregiver());
+            statement.setInt(3, slot.getValue());
+            statement.addBatch();
+        }
+        if (statement != null) {
+            statement.executeBatch();
+        }
+    }
+
+    private static void writeCheckpoint(ConnectionManager cm, long sequence) throws SQLException {
+        String updateCheckpoint = "UPDATE JournalCheckpoint SET LastSequence = ?";
+        String insertCheckpoint = "INSERT INTO JournalCheckpoint VALUES (?)";
+        PreparedStatement statement = cm.prepareStatement(updateCheckpoint);
+        statement.setLong(1, sequence);
+        if (statement.executeUpdate() == 0) {
+            statement = cm.prepareStatement(insertCheckpoint);
+            statement.setLong(1, sequence);
+            statement.executeUpdate();
+        }
+    }
+
+    private record Slot(Date date, String caregiver) {
+    }
+}
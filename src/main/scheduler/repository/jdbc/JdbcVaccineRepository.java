@@ -0,0 +1,181 @@
+package scheduler.repository.jdbc;
+
+import scheduler.db.ConnectionManager;
+import scheduler.repository.VaccineRepository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Vaccines, plus the DoseCheckpoint row the DoseInventory uses to recover doses after a crash
+public class JdbcVaccineRepository implements VaccineRepository {
+    private static final String selectCheckpoint = "SELECT COALESCE(MAX(LastAppointmentId), 0) FROM DoseCheckpoint";
+    // an appointment still being booked may have a higher id than this; it is then counted again on recovery,
+    // which can only make the recovered count lower
+    private static final String selectCurrentAppointment = "SELECT COALESCE(MAX(Id), 0) FROM Appointments";
+
+    @Override
+    public int findDoses(String name) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String getVaccine = "SELECT Name, Doses FROM Vaccines WHERE Name = ?";
+        try {
+            PreparedStatement statement = cm.prepareStatement(getVaccine);
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt("Doses") : -1;
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void insert(String name, int doses) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String addDoses = "INSERT INTO vaccines VALUES (?, ?)";
+        try {
+            PreparedStatement statement = cm.prepareStatement(addDoses);
+            statement.setString(1, name);
+            statement.setInt(2, doses);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void addDoses(String name, int num) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String addAvailability  = "UPDATE vaccines SET Doses = Doses + ? WHERE name = ?;";
+        try {
+            PreparedStatement statement = cm.prepareStatement(addAvailability);
+            statement.setInt(1, num);
+            statement.setString(2, name);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> findAll() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        try {
+            return selectAll(cm);
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> recoverDoses() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String takenSince = "(SELECT COUNT(*) FROM Appointments AS A " +
+                "WHERE A.VaccineName = Vaccines.Name AND A.Id > ? AND A.Id <= ?)";
+        String recoverDoses = "UPDATE Vaccines SET Doses = CASE WHEN Doses > " + takenSince +
+                " THEN Doses - " + takenSince + " ELSE 0 END";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = cm.prepareStatement(selectCheckpoint);
+            int checkpoint = selectInt(statement);
+            statement = cm.prepareStatement(selectCurrentAppointment);
+            int current = selectInt(statement);
+
+            // appointments booked after the last flush took doses the Vaccines table never heard about
+            statement = cm.prepareStatement(recoverDoses);
+            statement.setInt(1, checkpoint);
+            statement.setInt(2, current);
+            statement.setInt(3, checkpoint);
+            statement.setInt(4, current);
+            statement.executeUpdate();
+            writeCheckpoint(cm, current);
+
+            Map<String, Integer> doses = selectAll(cm);
+            con.commit();
+            return doses;
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void applyDoseDeltas(Map<String, Integer> deltas, int checkpoint) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String updateDoses = "UPDATE Vaccines SET Doses = Doses + ? WHERE Name = ?";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = cm.prepareStatement(updateDoses);
+            for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                statement.setInt(1, delta.getValue());
+                statement.setString(2, delta.getKey());
+                statement.addBatch();
+            }
+            if (!deltas.isEmpty()) {
+                statement.executeBatch();
+            }
+            writeCheckpoint(cm, checkpoint);
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static Map<String, Integer> selectAll(ConnectionManager cm) throws SQLException {
+        String selectVaccines = "SELECT Name, Doses FROM Vaccines";
+        PreparedStatement statement = cm.prepareStatement(selectVaccines);
+        Map<String, Integer> doses = new TreeMap<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                doses.put(resultSet.getString("Name"), resultSet.getInt("Doses"));
+            }
+        }
+        return doses;
+    }
+
+    private static int selectInt(PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    private static void writeCheckpoint(ConnectionManager cm, int checkpoint) throws SQLException {
+        String updateCheckpoint = "UPDATE DoseCheckpoint SET LastAppointmentId = ?";
+        String insertCheckpoint = "INSERT INTO DoseCheckpoint VALUES (?)";
+        PreparedStatement statement = cm.prepareStatement(updateCheckpoint);
+        statement.setInt(1, checkpoint);
+        if (statement.executeUpdate() == 0) {
+            statement = cm.prepareStatement(insertCheckpoint);
+            statement.setInt(1, checkpoint);
+            statement.executeUpdate();
+        }
+    }
+}
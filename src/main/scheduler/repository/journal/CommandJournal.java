@@ -0,0 +1,392 @@
+package scheduler.repository.journal;
+
+import scheduler.metrics.Metrics;
+import scheduler.repository.Account;
+import scheduler.repository.AccountRepository;
+import scheduler.repository.jdbc.JdbcJournalRepository;
+import scheduler.util.Util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// A write-ahead journal in front of the jdbc backend, on when JournalPath names a file.
+//
+// New accounts, availabilities and doses are appended to a memory-mapped file (see JournalFile) and the command is
+// acknowledged as soon as its record is on local disk, instead of after a round trip to the database. Appends are
+// synced in groups: whoever syncs next makes everything appended so far durable, so concurrent commands share one
+// msync. A single applier thread then writes the durable records to the database in order, up to
+// JournalApplyBatch of them per transaction, along with the sequence number of the last one applied.
+//
+// Reads stay consistent with what was acknowledged. A pending account can already log in, and its username is
+// taken. A new account is only journaled once a key-only lookup has found its username free in the database too.
+// Should another process take the username before the account is applied, the applier reports the account as
+// skipped instead of inserting it. Reads of availabilities and doses wait until the journaled writes of that kind
+// are applied, for up to JournalWaitMs, which costs nothing when none are pending.
+//
+// On startup open() replays whatever a previous run journaled but did not apply. Records at or below the stored
+// sequence number are skipped, so every record is applied exactly once. When the file (JournalSizeMb) fills up,
+// appends wait for the applier to catch up and then start again at the front of the file.
+public class CommandJournal {
+    private static final CommandJournal instance = new CommandJournal(Util.getConfig("JournalPath", null),
+            Util.getConfigInt("JournalSizeMb", 64), Util.getConfigInt("JournalApplyBatch", 256),
+            Util.getConfigLong("JournalWaitMs", 30_000));
+
+    private final Path path;
+    private final int capacity;
+    private final int applyBatch;
+    private final long waitNanos;
+    private final JdbcJournalRepository repository = new JdbcJournalRepository();
+
+    // appends, and the position of the last one, under appendLock
+    private final Object appendLock = new Object();
+    private JournalFile file;
+    private long lastSequence = 0;
+    private volatile Tail tail = new Tail(0, 0);
+    private final AtomicLongArray lastOfType = new AtomicLongArray(JournalEntry.Type.values().length);
+    // by lower-cased username, since the database may compare usernames case-insensitively
+    private final Map<JournalEntry.Type, ConcurrentHashMap<String, Account>> pendingAccounts =
+            new EnumMap<>(JournalEntry.Type.class);
+
+    // one sync at a time; a thread that waited for it usually finds its record already durable
+    private final Object syncLock = new Object();
+    private int syncedOffset = 0;
+    private volatile long syncedSequence = 0;
+
+    // appended records not yet applied, in sequence order; the applier only takes the durable ones
+    private final ConcurrentLinkedQueue<JournalEntry> unapplied = new ConcurrentLinkedQueue<>();
+    private volatile long appliedSequence = 0;
+    // notified whenever syncedSequence or appliedSequence advances
+    private final Object progress = new Object();
+
+    private volatile boolean open = false;
+    private volatile boolean closing = false;
+    private Thread applier;
+
+    // counters reported by the stats command
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    private CommandJournal(String path, int sizeMb, int applyBatch, long waitMillis) {
+        if (sizeMb < 1 || sizeMb > 1024) {
+            throw new IllegalArgumentException("JournalSizeMb must be between 1 and 1024");
+        }
+        if (applyBatch < 1) {
+            throw new IllegalArgumentException("JournalApplyBatch must be positive");
+        }
+        this.path = path == null ? null : Paths.get(path);
+        this.capacity = sizeMb << 20;
+        this.applyBatch = applyBatch;
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        this.pendingAccounts.put(JournalEntry.Type.PATIENT, new ConcurrentHashMap<>());
+        this.pendingAccounts.put(JournalEntry.Type.CAREGIVER, new ConcurrentHashMap<>());
+    }
+
+    public static CommandJournal getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    // until open() succeeds, the journaled repositories go straight to the database
+    public boolean isOpen() {
+        return open;
+    }
+
+    // Apply what a previous run left unapplied, then start taking appends
+    public synchronized void open() throws SQLException {
+        if (!isEnabled() || open) {
+            return;
+        }
+        long checkpoint = repository.lastApplied();
+        try {
+            file = new JournalFile(path, capacity);
+        } catch (IOException e) {
+            throw new SQLException("Could not open journal " + path, e);
+        }
+        List<JournalEntry> unappliedTail = new ArrayList<>();
+        long last = file.scan(entry -> {
+            if (entry.getSequence() > checkpoint) {
+                unappliedTail.add(entry);
+            }
+        });
+        for (int start = 0; start < unappliedTail.size(); start += applyBatch) {
+            reportSkipped(repository.apply(
+                    unappliedTail.subList(start, Math.min(unappliedTail.size(), start + applyBatch))));
+        }
+        if (!unappliedTail.isEmpty()) {
+            System.out.println("Replayed " + unappliedTail.size() + " journaled command(s)");
+        }
+        // everything in the file is applied now; new records go at the front with higher sequence numbers
+        lastSequence = Math.max(checkpoint, last);
+        syncedSequence = lastSequence;
+        appliedSequence = lastSequence;
+        tail = new Tail(lastSequence, 0);
+        file.rewind();
+        open = true;
+        applier = new Thread(this::applyLoop, "journal-applier");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    // Journal a new account. The username is claimed among the pending accounts first and then looked up in
+    // stored, so neither a concurrent create nor an account already in the database can end up with it.
+    public void appendAccount(JournalEntry.Type type, Account account, AccountRepository stored)
+            throws SQLException {
+        ConcurrentHashMap<String, Account> pending = pendingAccounts.get(type);
+        String key = key(account.getUsername());
+        if (pending.putIfAbsent(key, account) != null) {
+            throw new SQLException("Username taken: " + account.getUsername());
+        }
+        try {
+            if (stored.exists(account.getUsername())) {
+                throw new SQLException("Username taken: " + account.getUsername());
+            }
+            append(JournalEntry.account(type, account));
+        } catch (SQLException e) {
+            pending.remove(key, account);
+            throw e;
+        }
+    }
+
+    public void appendAvailability(Date date, String caregiver, int slots) throws SQLException {
+        append(JournalEntry.availability(date, caregiver, slots));
+    }
+
+    public void appendDoses(String vaccineName, int doses) throws SQLException {
+        append(JournalEntry.doses(vaccineName, doses));
+    }
+
+    // an account created through the journal and not yet applied, or null
+    public Account pendingAccount(JournalEntry.Type type, String username) {
+        return pendingAccounts.get(type).get(key(username));
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    // Wait until every write of the type journaled so far is in the database
+    public void awaitApplied(JournalEntry.Type type) throws SQLException {
+        awaitApplied(lastOfType.get(type.ordinal()));
+    }
+
+    // Stop taking appends and give the applier until JournalWaitMs to apply what is left; the rest is replayed on
+    // the next start
+    public void close() {
+        synchronized (appendLock) {
+            if (!open) {
+                return;
+            }
+            open = false;
+        }
+        try {
+            awaitApplied(lastSequence);
+        } catch (SQLException e) {
+            System.out.println("Journaled commands left to replay on the next start");
+        }
+        closing = true;
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+        try {
+            applier.join(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            file.close();
+        } catch (InterruptedException | IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Append the entry and return once it is durable. A command whose sync fails may still be applied later.
+    private void append(JournalEntry entry) throws SQLException {
+        byte[] payload = entry.encode();
+        long sequence;
+        synchronized (appendLock) {
+            if (!open) {
+                throw new SQLException("The journal is closed");
+            }
+            sequence = lastSequence + 1;
+            if (!file.append(sequence, payload)) {
+                rewind();
+                if (!file.append(sequence, payload)) {
+                    throw new SQLException("Journal entry does not fit in JournalSizeMb");
+                }
+            }
+            lastSequence = sequence;
+            unapplied.add(entry.withSequence(sequence));
+            lastOfType.set(entry.getType().ordinal(), sequence);
+            tail = new Tail(sequence, file.position());
+        }
+        appended.increment();
+        sync(sequence);
+    }
+
+    // The file is full: wait for everything in it to be applied, then write over it from the front. Called under
+    // appendLock, which the sync and the applier never need.
+    private void rewind() throws SQLException {
+        sync(lastSequence);
+        awaitApplied(lastSequence);
+        synchronized (syncLock) {
+            file.rewind();
+            syncedOffset = 0;
+            tail = new Tail(lastSequence, 0);
+        }
+    }
+
+    private void sync(long sequence) throws SQLException {
+        if (syncedSequence >= sequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+            Tail target = tail;
+            long start = System.nanoTime();
+            try {
+                file.force(syncedOffset, target.offset());
+            } catch (UncheckedIOException e) {
+                throw new SQLException("Could not sync journal " + path, e);
+            }
+            Metrics.getInstance().journalSync().record(System.nanoTime() - start);
+            syncedOffset = target.offset();
+            syncedSequence = target.sequence();
+            syncs.increment();
+        }
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+    }
+
+    private void awaitApplied(long sequence) throws SQLException {
+        if (appliedSequence >= sequence) {
+            return;
+        }
+        long deadline = System.nanoTime() + waitNanos;
+        synchronized (progress) {
+            while (appliedSequence < sequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SQLException("Timed out waiting for the journal to be applied");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(progress, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException(e);
+                }
+            }
+        }
+    }
+
+    private void applyLoop() {
+        while (true) {
+            List<JournalEntry> batch = nextBatch();
+            if (batch == null) {
+                return;
+            }
+            try {
+                reportSkipped(repository.apply(batch));
+            } catch (SQLException e) {
+                // the batch rolled back as a whole: try it again once the database is back
+                System.out.println("Error occurred when applying the journal");
+                e.printStackTrace();
+                try {
+                    Thread.sleep(1_000);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                continue;
+            }
+            for (JournalEntry entry : batch) {
+                unapplied.poll();
+                if (entry.getAccount() != null) {
+                    pendingAccounts.get(entry.getType()).remove(key(entry.getName()), entry.getAccount());
+                }
+            }
+            applied.add(batch.size());
+            appliedSequence = batch.get(batch.size() - 1).getSequence();
+            synchronized (progress) {
+                progress.notifyAll();
+            }
+        }
+    }
+
+    // Accounts that were acknowledged but whose username was taken by the time they were applied
+    private void reportSkipped(List<JournalEntry> entries) {
+        for (JournalEntry entry : entries) {
+            System.out.println("Journaled " + entry.getType().name().toLowerCase(Locale.ROOT) + " account " +
+                    entry.getName() + " was not created: the username was taken before it was applied");
+            skipped.increment();
+        }
+    }
+
+    // the next durable entries to apply, waiting for some if there are none; null once closed
+    private List<JournalEntry> nextBatch() {
+        synchronized (progress) {
+            while (true) {
+                List<JournalEntry> batch = new ArrayList<>();
+                for (JournalEntry entry : unapplied) {
+                    if (batch.size() == applyBatch || entry.getSequence() > syncedSequence) {
+                        break;
+                    }
+                    batch.add(entry);
+                }
+                if (!batch.isEmpty()) {
+                    return batch;
+                }
+                if (closing) {
+                    return null;
+                }
+                try {
+                    progress.wait();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    // Getters
+    public long getAppended() {
+        return appended.sum();
+    }
+
+    public long getSyncs() {
+        return syncs.sum();
+    }
+
+    public long getApplied() {
+        return applied.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    // journaled and not yet applied
+    public long getBacklog() {
+        return tail.sequence() - appliedSequence;
+    }
+
+    // the last record appended, and where the next one goes
+    private record Tail(long sequence, int offset) {
+    }
+}
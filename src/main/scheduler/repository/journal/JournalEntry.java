@@ -0,0 +1,127 @@
+package scheduler.repository.journal;
+
+import scheduler.repository.Account;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.LocalDate;
+
+// One journaled write, as the CommandJournal stores it and the applier replays it. Accounts are only inserted if
+// absent, so they are safe to apply again; availability slots and doses add up, and are only ever applied once
+// because the applier records the last sequence number it applied in the same transaction.
+public class JournalEntry {
+    public enum Type {
+        PATIENT, CAREGIVER, AVAILABILITY, DOSES
+    }
+
+    private final long sequence;
+    private final Type type;
+    // PATIENT and CAREGIVER: the account; AVAILABILITY: the caregiver, the date and the slots added;
+    // DOSES: the vaccine and the doses added
+    private final String name;
+    private final Account account;
+    private final Date date;
+    private final int amount;
+
+    private JournalEntry(long sequence, Type type, String name, Account account, Date date, int amount) {
+        this.sequence = sequence;
+        this.type = type;
+        this.name = name;
+        this.account = account;
+        this.date = date;
+        this.amount = amount;
+    }
+
+    static JournalEntry account(Type type, Account account) {
+        return new JournalEntry(0, type, account.getUsername(), account, null, 0);
+    }
+
+    static JournalEntry availability(Date date, String caregiver, int slots) {
+        return new JournalEntry(0, Type.AVAILABILITY, caregiver, null, date, slots);
+    }
+
+    static JournalEntry doses(String vaccineName, int doses) {
+        return new JournalEntry(0, Type.DOSES, vaccineName, null, null, doses);
+    }
+
+    JournalEntry withSequence(long sequence) {
+        return new JournalEntry(sequence, type, name, account, date, amount);
+    }
+
+    // Getters
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public int getSlots() {
+        return amount;
+    }
+
+    public int getDoses() {
+        return amount;
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type.ordinal());
+            out.writeUTF(name);
+            switch (type) {
+                case PATIENT, CAREGIVER -> {
+                    out.writeShort(account.getSalt().length);
+                    out.write(account.getSalt());
+                    out.writeShort(account.getHash().length);
+                    out.write(account.getHash());
+                }
+                case AVAILABILITY -> {
+                    out.writeLong(date.toLocalDate().toEpochDay());
+                    out.writeInt(amount);
+                }
+                case DOSES -> out.writeInt(amount);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JournalEntry decode(long sequence, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Type type = Type.values()[in.readUnsignedByte()];
+        String name = in.readUTF();
+        return switch (type) {
+            case PATIENT, CAREGIVER -> {
+                byte[] salt = in.readNBytes(in.readUnsignedShort());
+                byte[] hash = in.readNBytes(in.readUnsignedShort());
+                yield new JournalEntry(sequence, type, name, new Account(name, salt, hash), null, 0);
+            }
+            case AVAILABILITY -> {
+                Date date = Date.valueOf(LocalDate.ofEpochDay(in.readLong()));
+                // records from before slots were counted end at the date, and were one slot each
+                yield new JournalEntry(sequence, type, name, null, date, in.available() > 0 ? in.readInt() : 1);
+            }
+            case DOSES -> new JournalEntry(sequence, type, name, null, null, in.readInt());
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package scheduler.repository.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// An append-only run of records in one memory-mapped file of fixed size. Each record is
+//   int payload length | int CRC32 of sequence and payload | long sequence | payload
+// Appending only copies the record into the mapping; force() makes a range durable with a single msync, however
+// many records it holds. When the file is full the caller rewinds it and writes over the front again.
+//
+// Sequence numbers only grow, so a scan can tell where the records written since the last rewind end: at the first
+// record that is torn (bad length or CRC) or older than the one before it, which is left over from earlier.
+// The caller must not append from more than one thread at a time.
+class JournalFile implements Closeable {
+    private static final int HEADER = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int position = 0;
+
+    JournalFile(Path path, int capacity) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.capacity = capacity;
+    }
+
+    // Hand every intact record from the front of the file to action, in order; returns the last sequence number
+    // seen, or 0 if there are none
+    long scan(Consumer<JournalEntry> action) {
+        int offset = 0;
+        long last = 0;
+        while (offset + HEADER <= capacity) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > capacity - offset - HEADER) {
+                break;
+            }
+            long sequence = buffer.getLong(offset + 8);
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER, payload);
+            if (sequence <= last || buffer.getInt(offset + 4) != checksum(sequence, payload)) {
+                break;
+            }
+            try {
+                action.accept(JournalEntry.decode(sequence, payload));
+            } catch (IOException | RuntimeException e) {
+                break;
+            }
+            last = sequence;
+            offset += HEADER + length;
+        }
+        return last;
+    }
+
+    // false if the record does not fit in what is left of the file
+    boolean append(long sequence, byte[] payload) {
+        if (HEADER + payload.length > capacity - position) {
+            return false;
+        }
+        buffer.putInt(position, payload.length);
+        buffer.putInt(position + 4, checksum(sequence, payload));
+        buffer.putLong(position + 8, sequence);
+        buffer.put(position + HEADER, payload);
+        position += HEADER + payload.length;
+        return true;
+    }
+
+    // the offset the next record will be written at
+    int position() {
+        return position;
+    }
+
+    // write the next record at the front of the file
+    void rewind() {
+        position = 0;
+    }
+
+    // make the bytes in [from, to) durable
+    void force(int from, int to) {
+        if (to > from) {
+            buffer.force(from, to - from);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (sequence >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
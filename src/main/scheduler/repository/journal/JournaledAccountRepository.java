@@ -0,0 +1,54 @@
+package scheduler.repository.journal;
+
+import scheduler.repository.Account;
+import scheduler.repository.AccountRepository;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Patients or caregivers through the CommandJournal: a new account is journaled, and lookups see it before it
+// reaches the database
+public class JournaledAccountRepository implements AccountRepository {
+    private final AccountRepository delegate;
+    private final JournalEntry.Type type;
+    private final CommandJournal journal = CommandJournal.getInstance();
+
+    public JournaledAccountRepository(AccountRepository delegate, JournalEntry.Type type) {
+        this.delegate = delegate;
+        this.type = type;
+    }
+
+    @Override
+    public boolean exists(String username) throws SQLException {
+        return journal.pendingAccount(type, username) != null || delegate.exists(username);
+    }
+
+    @Override
+    public Account find(String username) throws SQLException {
+        Account pending = journal.pendingAccount(type, username);
+        return pending != null ? pending : delegate.find(username);
+    }
+
+    @Override
+    public void forEachUsername(Consumer<String> action) throws SQLException {
+        journal.awaitApplied(type);
+        delegate.forEachUsername(action);
+    }
+
+    @Override
+    public void insert(Account account) throws SQLException {
+        if (journal.isOpen()) {
+            journal.appendAccount(type, account, delegate);
+        } else {
+            delegate.insert(account);
+        }
+    }
+
+    // imports report which usernames were free, which only the database can tell
+    @Override
+    public boolean[] insertAllIfAbsent(List<Account> accounts) throws SQLException {
+        journal.awaitApplied(type);
+        return delegate.insertAllIfAbsent(accounts);
+    }
+}
@@ -0,0 +1,81 @@
+package scheduler.repository.journal;
+
+import scheduler.model.Appointment;
+import scheduler.repository.AppointmentQuery;
+import scheduler.repository.AppointmentRepository;
+import scheduler.repository.Reservation;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// Appointments behind the CommandJournal: a reservation claims availability and doses in the database, so it
+// waits for the journaled ones to be applied first. Everything else goes straight through.
+public class JournaledAppointmentRepository implements AppointmentRepository {
+    private final AppointmentRepository delegate;
+    private final CommandJournal journal = CommandJournal.getInstance();
+
+    public JournaledAppointmentRepository(AppointmentRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Reservation reserve(String patientName, String vaccineName, Date date, String candidate, boolean takeDose)
+            throws SQLException {
+        awaitClaimable(takeDose);
+        return delegate.reserve(patientName, vaccineName, date, candidate, takeDose);
+    }
+
+    @Override
+    public List<Reservation> reserveAll(List<String> patientNames, String vaccineName, Date date,
+                                        List<String> candidates, boolean takeDoses) throws SQLException {
+        awaitClaimable(takeDoses);
+        return delegate.reserveAll(patientNames, vaccineName, date, candidates, takeDoses);
+    }
+
+    private void awaitClaimable(boolean takeDoses) throws SQLException {
+        journal.awaitApplied(JournalEntry.Type.AVAILABILITY);
+        if (takeDoses) {
+            journal.awaitApplied(JournalEntry.Type.DOSES);
+        }
+    }
+
+    @Override
+    public Appointment cancelOfPatient(int id, String patientName, boolean giveBackDoses) throws SQLException {
+        return delegate.cancelOfPatient(id, patientName, giveBackDoses);
+    }
+
+    @Override
+    public Appointment cancelOfCaregiver(int id, String caregiverName, boolean giveBackDoses) throws SQLException {
+        return delegate.cancelOfCaregiver(id, caregiverName, giveBackDoses);
+    }
+
+    @Override
+    public List<Appointment> cancelDay(String caregiverName, Date date, boolean giveBackDoses) throws SQLException {
+        return delegate.cancelDay(caregiverName, date, giveBackDoses);
+    }
+
+    @Override
+    public int lastId() throws SQLException {
+        return delegate.lastId();
+    }
+
+    @Override
+    public void countByCaregiver(BiConsumer<String, Integer> action) throws SQLException {
+        delegate.countByCaregiver(action);
+    }
+
+    @Override
+    public void forEachOfCaregiver(String caregiverName, AppointmentQuery query, Consumer<Appointment> action)
+            throws SQLException {
+        delegate.forEachOfCaregiver(caregiverName, query, action);
+    }
+
+    @Override
+    public void forEachOfPatient(String patientName, AppointmentQuery query, Consumer<Appointment> action)
+            throws SQLException {
+        delegate.forEachOfPatient(patientName, query, action);
+    }
+}
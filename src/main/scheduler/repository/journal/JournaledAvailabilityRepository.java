@@ -0,0 +1,59 @@
+package scheduler.repository.journal;
+
+import scheduler.repository.AvailabilityRepository;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// Availabilities through the CommandJournal: slots for a single date are journaled, and reads wait for them to be
+// applied.
+public class JournaledAvailabilityRepository implements AvailabilityRepository {
+    private final AvailabilityRepository delegate;
+    private final CommandJournal journal = CommandJournal.getInstance();
+
+    public JournaledAvailabilityRepository(AvailabilityRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void add(Date date, String caregiver, int slots) throws SQLException {
+        if (journal.isOpen()) {
+            journal.appendAvailability(date, caregiver, slots);
+        } else {
+            delegate.add(date, caregiver, slots);
+        }
+    }
+
+    // ranges report which dates were new, which only the database can tell
+    @Override
+    public List<Date> addAllIfAbsent(String caregiver, List<Date> dates, int slots) throws SQLException {
+        journal.awaitApplied(JournalEntry.Type.AVAILABILITY);
+        return delegate.addAllIfAbsent(caregiver, dates, slots);
+    }
+
+    @Override
+    public List<String> findCaregivers(Date date) throws SQLException {
+        journal.awaitApplied(JournalEntry.Type.AVAILABILITY);
+        return delegate.findCaregivers(date);
+    }
+
+    @Override
+    public void countByDate(Date start, Date end, BiConsumer<Date, Integer> action) throws SQLException {
+        journal.awaitApplied(JournalEntry.Type.AVAILABILITY);
+        delegate.countByDate(start, end, action);
+    }
+
+    @Override
+    public void forEachInRange(Date start, Date end, BiConsumer<Date, String> action) throws SQLException {
+        journal.awaitApplied(JournalEntry.Type.AVAILABILITY);
+        delegate.forEachInRange(start, end, action);
+    }
+
+    @Override
+    public void forEach(SlotConsumer action) throws SQLException {
+        journal.awaitApplied(JournalEntry.Type.AVAILABILITY);
+        delegate.forEach(action);
+    }
+}
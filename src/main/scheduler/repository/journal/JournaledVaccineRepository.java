@@ -0,0 +1,60 @@
+package scheduler.repository.journal;
+
+import scheduler.repository.VaccineRepository;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+// Vaccines through the CommandJournal: added doses are journaled, and dose counts are read once they are applied.
+// A journaled vaccine is created when applied if it does not exist yet, so insert and addDoses journal the same
+// thing.
+public class JournaledVaccineRepository implements VaccineRepository {
+    private final VaccineRepository delegate;
+    private final CommandJournal journal = CommandJournal.getInstance();
+
+    public JournaledVaccineRepository(VaccineRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public int findDoses(String name) throws SQLException {
+        journal.awaitApplied(JournalEntry.Type.DOSES);
+        return delegate.findDoses(name);
+    }
+
+    @Override
+    public void insert(String name, int doses) throws SQLException {
+        if (journal.isOpen()) {
+            journal.appendDoses(name, doses);
+        } else {
+            delegate.insert(name, doses);
+        }
+    }
+
+    @Override
+    public void addDoses(String name, int num) throws SQLException {
+        if (journal.isOpen()) {
+            journal.appendDoses(name, num);
+        } else {
+            delegate.addDoses(name, num);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> findAll() throws SQLException {
+        journal.awaitApplied(JournalEntry.Type.DOSES);
+        return delegate.findAll();
+    }
+
+    @Override
+    public Map<String, Integer> recoverDoses() throws SQLException {
+        journal.awaitApplied(JournalEntry.Type.DOSES);
+        return delegate.recoverDoses();
+    }
+
+    // deltas add to whatever the journal adds, in either order
+    @Override
+    public void applyDoseDeltas(Map<String, Integer> deltas, int checkpoint) throws SQLException {
+        delegate.applyDoseDeltas(deltas, checkpoint);
+    }
+}
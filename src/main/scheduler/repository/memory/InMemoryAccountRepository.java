@@ -0,0 +1,59 @@
+package scheduler.repository.memory;
+
+import scheduler.repository.Account;
+import scheduler.repository.AccountRepository;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class InMemoryAccountRepository implements AccountRepository {
+    private final ConcurrentHashMap<String, Account> accounts;
+
+    private InMemoryAccountRepository(ConcurrentHashMap<String, Account> accounts) {
+        this.accounts = accounts;
+    }
+
+    public static InMemoryAccountRepository patients(InMemoryStore store) {
+        return new InMemoryAccountRepository(store.patients);
+    }
+
+    public static InMemoryAccountRepository caregivers(InMemoryStore store) {
+        return new InMemoryAccountRepository(store.caregivers);
+    }
+
+    @Override
+    public boolean exists(String username) {
+        return accounts.containsKey(username);
+    }
+
+    @Override
+    public Account find(String username) {
+        return accounts.get(username);
+    }
+
+    @Override
+    public void forEachUsername(Consumer<String> action) {
+        accounts.keySet().forEach(action);
+    }
+
+    @Override
+    public void insert(Account account) throws SQLException {
+        // same outcome as the primary key violation the database would report
+        if (accounts.putIfAbsent(account.getUsername(), account) != null) {
+            throw new SQLIntegrityConstraintViolationException("Username taken: " + account.getUsername());
+        }
+    }
+
+    @Override
+    public boolean[] insertAllIfAbsent(List<Account> accounts) {
+        boolean[] inserted = new boolean[accounts.size()];
+        for (int i = 0; i < inserted.length; i++) {
+            Account account = accounts.get(i);
+            inserted[i] = this.accounts.putIfAbsent(account.getUsername(), account) == null;
+        }
+        return inserted;
+    }
+}
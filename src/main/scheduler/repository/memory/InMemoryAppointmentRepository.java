@@ -0,0 +1,153 @@
+package scheduler.repository.memory;
+
+import scheduler.model.Appointment;
+import scheduler.repository.AppointmentQuery;
+import scheduler.repository.AppointmentRepository;
+import scheduler.repository.Reservation;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class InMemoryAppointmentRepository implements AppointmentRepository {
+    private final InMemoryStore store;
+
+    public InMemoryAppointmentRepository(InMemoryStore store) {
+        this.store = store;
+    }
+
+    // Taking one of the caregiver's slots on the date is the claim: concurrent reservers never share a slot
+    @Override
+    public Reservation reserve(String patientName, String vaccineName, Date date, String candidate,
+                               boolean takeDose) {
+        ConcurrentSkipListMap<String, Integer> available = store.availableOn(date.toLocalDate());
+        String caregiver = candidate;
+        while (caregiver == null || !InMemoryStore.takeSlot(available, caregiver)) {
+            try {
+                caregiver = available.firstKey();
+            } catch (NoSuchElementException e) {
+                return Reservation.failed(Appointment.ReserveStatus.NO_CAREGIVER);
+            }
+        }
+        if (takeDose && !store.takeDoses(vaccineName, 1)) {
+            available.merge(caregiver, 1, Integer::sum);
+            return Reservation.failed(Appointment.ReserveStatus.NO_DOSES);
+        }
+
+        int id = store.lastAppointmentId.incrementAndGet();
+        Appointment appointment = new Appointment.AppointmentBuilder(id, caregiver, patientName, vaccineName, date)
+                .build();
+        store.byCaregiver.computeIfAbsent(caregiver, k -> new ConcurrentSkipListMap<>()).put(id, appointment);
+        store.byPatient.computeIfAbsent(patientName, k -> new ConcurrentSkipListMap<>()).put(id, appointment);
+        return Reservation.booked(id, caregiver);
+    }
+
+    // every reservation here is already a single atomic step, so there is nothing to gain from batching them
+    @Override
+    public List<Reservation> reserveAll(List<String> patientNames, String vaccineName, Date date,
+                                        List<String> candidates, boolean takeDoses) {
+        List<Reservation> reservations = new ArrayList<>(patientNames.size());
+        for (int i = 0; i < patientNames.size(); i++) {
+            reservations.add(reserve(patientNames.get(i), vaccineName, date, candidates.get(i), takeDoses));
+        }
+        return reservations;
+    }
+
+    // Removing the appointment from the map it was found in is the claim: exactly one concurrent cancel can succeed
+    @Override
+    public Appointment cancelOfPatient(int id, String patientName, boolean giveBackDoses) {
+        Appointment appointment = removeFrom(store.byPatient, patientName, id);
+        if (appointment != null) {
+            removeFrom(store.byCaregiver, appointment.getCaregiverName(), id);
+            release(appointment, giveBackDoses);
+        }
+        return appointment;
+    }
+
+    @Override
+    public Appointment cancelOfCaregiver(int id, String caregiverName, boolean giveBackDoses) {
+        Appointment appointment = removeFrom(store.byCaregiver, caregiverName, id);
+        if (appointment != null) {
+            removeFrom(store.byPatient, appointment.getPatientName(), id);
+            release(appointment, giveBackDoses);
+        }
+        return appointment;
+    }
+
+    @Override
+    public List<Appointment> cancelDay(String caregiverName, Date date, boolean giveBackDoses) {
+        List<Appointment> cancelled = new ArrayList<>();
+        ConcurrentSkipListMap<Integer, Appointment> appointments = store.byCaregiver.get(caregiverName);
+        if (appointments == null) {
+            return cancelled;
+        }
+        for (Appointment appointment : appointments.values()) {
+            if (appointment.getTime().toLocalDate().equals(date.toLocalDate())
+                    && appointments.remove(appointment.getId(), appointment)) {
+                removeFrom(store.byPatient, appointment.getPatientName(), appointment.getId());
+                release(appointment, giveBackDoses);
+                cancelled.add(appointment);
+            }
+        }
+        return cancelled;
+    }
+
+    private static Appointment removeFrom(
+            ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, Appointment>> byName, String name, int id) {
+        ConcurrentSkipListMap<Integer, Appointment> appointments = byName.get(name);
+        return appointments == null ? null : appointments.remove(id);
+    }
+
+    private void release(Appointment appointment, boolean giveBackDoses) {
+        store.availableOn(appointment.getTime().toLocalDate()).merge(appointment.getCaregiverName(), 1, Integer::sum);
+        if (giveBackDoses) {
+            AtomicInteger doses = store.vaccines.get(appointment.getVaccineName());
+            if (doses != null) {
+                doses.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public int lastId() {
+        return store.lastAppointmentId.get();
+    }
+
+    @Override
+    public void countByCaregiver(BiConsumer<String, Integer> action) {
+        store.byCaregiver.forEach((caregiver, appointments) -> action.accept(caregiver, appointments.size()));
+    }
+
+    @Override
+    public void forEachOfCaregiver(String caregiverName, AppointmentQuery query, Consumer<Appointment> action) {
+        forEach(store.byCaregiver.get(caregiverName), query, action);
+    }
+
+    @Override
+    public void forEachOfPatient(String patientName, AppointmentQuery query, Consumer<Appointment> action) {
+        forEach(store.byPatient.get(patientName), query, action);
+    }
+
+    private static void forEach(ConcurrentSkipListMap<Integer, Appointment> appointments, AppointmentQuery query,
+                                Consumer<Appointment> action) {
+        if (appointments == null) {
+            return;
+        }
+        int remaining = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+        for (Appointment appointment : appointments.tailMap(query.getAfterId(), false).values()) {
+            if (remaining == 0) {
+                return;
+            }
+            if (query.matches(appointment.getTime())) {
+                action.accept(appointment);
+                remaining--;
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package scheduler.repository.memory;
+
+import scheduler.repository.AvailabilityRepository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+public class InMemoryAvailabilityRepository implements AvailabilityRepository {
+    private final InMemoryStore store;
+
+    public InMemoryAvailabilityRepository(InMemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void add(Date date, String caregiver, int slots) {
+        store.availableOn(date.toLocalDate()).merge(caregiver, slots, Integer::sum);
+    }
+
+    @Override
+    public List<Date> addAllIfAbsent(String caregiver, List<Date> dates, int slots) {
+        List<Date> inserted = new ArrayList<>();
+        for (Date d : dates) {
+            if (store.availableOn(d.toLocalDate()).putIfAbsent(caregiver, slots) == null) {
+                inserted.add(d);
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public List<String> findCaregivers(Date date) {
+        return new ArrayList<>(store.availableOn(date.toLocalDate()).keySet());
+    }
+
+    @Override
+    public void countByDate(Date start, Date end, BiConsumer<Date, Integer> action) {
+        forEachDate(start, end, (d, caregivers) -> action.accept(d, caregivers.size()));
+    }
+
+    @Override
+    public void forEachInRange(Date start, Date end, BiConsumer<Date, String> action) {
+        forEachDate(start, end, (d, caregivers) -> caregivers.forEach(caregiver -> action.accept(d, caregiver)));
+    }
+
+    // the caregivers of every date in the range that has any
+    private void forEachDate(Date start, Date end, BiConsumer<Date, Set<String>> action) {
+        for (LocalDate d = start.toLocalDate(); !d.isAfter(end.toLocalDate()); d = d.plusDays(1)) {
+            Map<String, Integer> caregivers = store.availabilities.get(d);
+            if (caregivers != null && !caregivers.isEmpty()) {
+                action.accept(Date.valueOf(d), caregivers.keySet());
+            }
+        }
+    }
+
+    @Override
+    public void forEach(SlotConsumer action) {
+        store.availabilities.forEach((date, caregivers) -> {
+            Date d = Date.valueOf(date);
+            caregivers.forEach((caregiver, slots) -> action.accept(d, caregiver, slots));
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package scheduler.repository.memory;
+
+import scheduler.model.Appointment;
+import scheduler.repository.Account;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Everything the scheduler stores, held in concurrent collections inside this process. Nothing survives a
+// restart. The in-memory repositories share one store so a reservation can claim availability, take a dose and
+// record the appointment without any locking beyond what the collections already do.
+public class InMemoryStore {
+    final ConcurrentHashMap<String, Account> patients = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, Account> caregivers = new ConcurrentHashMap<>();
+    // date -> caregivers with free slots on that date, in username order, and how many each has left. A caregiver
+    // is removed with their last slot; empty maps are kept so adds never race removals.
+    final ConcurrentHashMap<LocalDate, ConcurrentSkipListMap<String, Integer>> availabilities =
+            new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, AtomicInteger> vaccines = new ConcurrentHashMap<>();
+    // username -> their appointments by id
+    final ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, Appointment>> byCaregiver =
+            new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, Appointment>> byPatient =
+            new ConcurrentHashMap<>();
+    final AtomicInteger lastAppointmentId = new AtomicInteger();
+
+    ConcurrentSkipListMap<String, Integer> availableOn(LocalDate date) {
+        return availabilities.computeIfAbsent(date, k -> new ConcurrentSkipListMap<>());
+    }
+
+    // take one of the caregiver's slots if they have any left; the compare-and-set is the claim
+    static boolean takeSlot(ConcurrentSkipListMap<String, Integer> available, String caregiver) {
+        while (true) {
+            Integer slots = available.get(caregiver);
+            if (slots == null) {
+                return false;
+            }
+            if (slots == 1 ? available.remove(caregiver, slots) : available.replace(caregiver, slots, slots - 1)) {
+                return true;
+            }
+        }
+    }
+
+    // take num doses if that many are left
+    boolean takeDoses(String vaccineName, int num) {
+        AtomicInteger doses = vaccines.get(vaccineName);
+        if (doses == null) {
+            return false;
+        }
+        int current;
+        do {
+            current = doses.get();
+            if (current < num) {
+                return false;
+            }
+        } while (!doses.compareAndSet(current, current - num));
+        return true;
+    }
+}
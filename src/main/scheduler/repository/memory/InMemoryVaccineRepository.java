@@ -0,0 +1,56 @@
+package scheduler.repository.memory;
+
+import scheduler.repository.VaccineRepository;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InMemoryVaccineRepository implements VaccineRepository {
+    private final InMemoryStore store;
+
+    public InMemoryVaccineRepository(InMemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public int findDoses(String name) {
+        AtomicInteger doses = store.vaccines.get(name);
+        return doses == null ? -1 : doses.get();
+    }
+
+    @Override
+    public void insert(String name, int doses) throws SQLException {
+        if (store.vaccines.putIfAbsent(name, new AtomicInteger(doses)) != null) {
+            throw new SQLIntegrityConstraintViolationException("Vaccine exists: " + name);
+        }
+    }
+
+    @Override
+    public void addDoses(String name, int num) {
+        AtomicInteger doses = store.vaccines.get(name);
+        if (doses != null) {
+            doses.addAndGet(num);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> findAll() {
+        Map<String, Integer> doses = new TreeMap<>();
+        store.vaccines.forEach((name, count) -> doses.put(name, count.get()));
+        return doses;
+    }
+
+    // nothing can be lost in a crash that also loses the store, so there is nothing to recover
+    @Override
+    public Map<String, Integer> recoverDoses() {
+        return findAll();
+    }
+
+    @Override
+    public void applyDoseDeltas(Map<String, Integer> deltas, int checkpoint) {
+        deltas.forEach(this::addDoses);
+    }
+}
@@ -0,0 +1,90 @@
+package scheduler.server;
+
+import scheduler.Scheduler;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Serves the scheduler command grammar to many clients at once over a loopback TCP socket.
+// Every client gets its own Session and its own virtual thread, so a session blocked on the database costs
+// no platform thread; the shared connection pool is what bounds the actual database concurrency.
+// A client sends one command per line and receives the command's output followed by the "> " prompt.
+public class SchedulerServer {
+    public static final int DEFAULT_PORT = 7070;
+
+    private final int port;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private ServerSocket serverSocket;
+
+    public SchedulerServer(int port) {
+        this.port = port;
+    }
+
+    // Accept clients until the server socket is closed
+    public void serve() throws IOException {
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        System.out.println("Scheduler server listening on " + serverSocket.getLocalSocketAddress());
+        try (ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (!serverSocket.isClosed()) {
+                Socket client;
+                try {
+                    client = serverSocket.accept();
+                } catch (IOException e) {
+                    if (serverSocket.isClosed()) {
+                        break;
+                    }
+                    throw e;
+                }
+                sessions.submit(() -> handle(client));
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    private void handle(Socket client) {
+        activeSessions.incrementAndGet();
+        try (Socket socket = client;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(
+                     new BufferedOutputStream(socket.getOutputStream()), false, StandardCharsets.UTF_8)) {
+            Session session = new Session(out);
+            Scheduler.printGreeting(out);
+            out.print("> ");
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                boolean keepGoing = Scheduler.execute(line, session);
+                if (!keepGoing) {
+                    out.flush();
+                    break;
+                }
+                out.print("> ");
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away mid-command; nothing to report back to
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+}
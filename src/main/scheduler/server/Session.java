@@ -0,0 +1,52 @@
+package scheduler.server;
+
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+
+import java.io.PrintStream;
+
+// The state of one client of the scheduler: who is logged in, and where replies go.
+// The interactive console has a single Session; in server mode each connected client gets its own.
+public class Session {
+    private final PrintStream out;
+    // Note: it is always true that at most one of currentCaregiver and currentPatient is not null
+    //       since only one user can be logged-in per session at a time
+    private Caregiver currentCaregiver = null;
+    private Patient currentPatient = null;
+
+    public Session(PrintStream out) {
+        this.out = out;
+    }
+
+    // Getters
+    public PrintStream getOut() {
+        return out;
+    }
+
+    public Caregiver getCurrentCaregiver() {
+        return currentCaregiver;
+    }
+
+    public Patient getCurrentPatient() {
+        return currentPatient;
+    }
+
+    public boolean isLoggedIn() {
+        return currentCaregiver != null || currentPatient != null;
+    }
+
+    public void login(Caregiver caregiver) {
+        this.currentCaregiver = caregiver;
+        this.currentPatient = null;
+    }
+
+    public void login(Patient patient) {
+        this.currentPatient = patient;
+        this.currentCaregiver = null;
+    }
+
+    public void logout() {
+        this.currentCaregiver = null;
+        this.currentPatient = null;
+    }
+}
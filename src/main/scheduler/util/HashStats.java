@@ -0,0 +1,50 @@
+package scheduler.util;
+
+// an immutable snapshot of the PasswordHasher counters
+public class HashStats {
+    private final long hashes;
+    private final long totalHashNanos;
+    private final long totalWaitNanos;
+    private final long maxHashNanos;
+    private final long uptimeNanos;
+
+    HashStats(long hashes, long totalHashNanos, long totalWaitNanos, long maxHashNanos, long uptimeNanos) {
+        this.hashes = hashes;
+        this.totalHashNanos = totalHashNanos;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxHashNanos = maxHashNanos;
+        this.uptimeNanos = uptimeNanos;
+    }
+
+    // Getters
+    public long getHashes() {
+        return hashes;
+    }
+
+    public double getAverageHashMillis() {
+        return hashes == 0 ? 0 : totalHashNanos / 1e6 / hashes;
+    }
+
+    public double getAverageWaitMillis() {
+        return hashes == 0 ? 0 : totalWaitNanos / 1e6 / hashes;
+    }
+
+    public double getMaxHashMillis() {
+        return maxHashNanos / 1e6;
+    }
+
+    public double getHashesPerSecond() {
+        return uptimeNanos == 0 ? 0 : hashes / (uptimeNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return "HashStats{" +
+                "hashes=" + hashes +
+                ", perSecond=" + String.format("%.1f", getHashesPerSecond()) +
+                ", avgHashMs=" + String.format("%.3f", getAverageHashMillis()) +
+                ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis()) +
+                ", maxHashMs=" + String.format("%.3f", getMaxHashMillis()) +
+                '}';
+    }
+}
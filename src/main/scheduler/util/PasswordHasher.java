@@ -0,0 +1,124 @@
+package scheduler.util;
+
+import scheduler.metrics.Metrics;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// PBKDF2 password hashing on a bounded pool of worker threads.
+//
+// Each worker keeps its own SecretKeyFactory, so the provider lookup happens once per thread instead of once per
+// hash. At most HashThreads hashes run at a time and at most HashQueueSize more may wait; further callers block
+// until there is room, so a burst of logins or an account import cannot take every CPU away from other commands.
+//
+// HashIterations and HashKeyLength (in bits) default to the values every stored hash was created with; changing
+// them makes existing passwords stop matching.
+public class PasswordHasher {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA1";
+    private static final PasswordHasher instance = new PasswordHasher(
+            Util.getConfigInt("HashIterations", 10),
+            Util.getConfigInt("HashKeyLength", 16),
+            Util.getConfigInt("HashThreads", Runtime.getRuntime().availableProcessors()),
+            Util.getConfigInt("HashQueueSize", 1024));
+
+    private static final ThreadLocal<SecretKeyFactory> factories = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final int iterations;
+    private final int keyLength;
+    private final ExecutorService workers;
+    private final Semaphore admission;
+
+    // counters reported through HashStats
+    private final long startedAt = System.nanoTime();
+    private final AtomicLong hashes = new AtomicLong();
+    private final AtomicLong totalHashNanos = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    private PasswordHasher(int iterations, int keyLength, int threads, int queueSize) {
+        this.iterations = iterations;
+        this.keyLength = keyLength;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "password-hasher-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.admission = new Semaphore(threads + queueSize, true);
+    }
+
+    public static PasswordHasher getInstance() {
+        return instance;
+    }
+
+    // Hash on the worker pool and wait for the result
+    public byte[] hash(String password, byte[] salt) {
+        return hashAsync(password, salt).join();
+    }
+
+    // Hash on the worker pool; blocks only while the pool's queue is full
+    public CompletableFuture<byte[]> hashAsync(String password, byte[] salt) {
+        long submitted = System.nanoTime();
+        admission.acquireUninterruptibly();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    long start = System.nanoTime();
+                    totalWaitNanos.addAndGet(start - submitted);
+                    byte[] hash = compute(password, salt);
+                    record(System.nanoTime() - start);
+                    return hash;
+                } finally {
+                    admission.release();
+                }
+            }, workers);
+        } catch (RuntimeException e) {
+            admission.release();
+            throw e;
+        }
+    }
+
+    public HashStats getStats() {
+        return new HashStats(hashes.get(), totalHashNanos.get(), totalWaitNanos.get(), maxHashNanos.get(),
+                System.nanoTime() - startedAt);
+    }
+
+    private byte[] compute(String password, byte[] salt) {
+        char[] chars = password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, salt, iterations, keyLength);
+        try {
+            return factories.get().generateSecret(spec).getEncoded();
+        } catch (InvalidKeySpecException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            // don't leave copies of the password lying around on the heap
+            spec.clearPassword();
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    private void record(long nanos) {
+        hashes.incrementAndGet();
+        totalHashNanos.addAndGet(nanos);
+        maxHashNanos.accumulateAndGet(nanos, Math::max);
+        Metrics.getInstance().hashing().record(nanos);
+    }
+}
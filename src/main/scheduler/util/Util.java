@@ -1,41 +1,43 @@
 package scheduler.util;
 
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
 import java.util.Arrays;
 
 public class Util {
 
-    // constants for handling password
-    private static final int HASH_STRENGTH = 10;
-    private static final int KEY_LENGTH = 16;
+    // SecureRandom is thread-safe, so every salt comes from one shared, already-seeded generator
+    private static final SecureRandom random = new SecureRandom();
+
+    // Look up a configuration value, preferring a JVM system property over an environment variable of the
+    // same name so that settings can be overridden per run with -D
+    public static String getConfig(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            value = System.getenv(name);
+        }
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    public static int getConfigInt(String name, int defaultValue) {
+        String value = getConfig(name, null);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public static long getConfigLong(String name, long defaultValue) {
+        String value = getConfig(name, null);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
 
     public static byte[] generateSalt() {
         // Generate a random cryptographic salt
-        SecureRandom random = new SecureRandom();
         byte[] salt = new byte[16];
         random.nextBytes(salt);
         return salt;
     }
 
     public static byte[] generateHash(String password, byte[] salt) {
-        // Specify the hash parameters
-        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, HASH_STRENGTH, KEY_LENGTH);
-
-        // Generate the hash
-        SecretKeyFactory factory = null;
-        byte[] hash = null;
-        try {
-            factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-            hash = factory.generateSecret(spec).getEncoded();
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException ex) {
-            throw new IllegalStateException();
-        }
-        return hash;
+        // hashing runs on the shared, bounded PasswordHasher pool
+        return PasswordHasher.getInstance().hash(password, salt);
     }
 
     public static byte[] trim(byte[] bytes)